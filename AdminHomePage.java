@@ -1,22 +1,55 @@
 package application;
 
 import databasePart1.DatabaseHelper;
+import databasePart1.Log;
+import databasePart1.OperationMetrics;
+import databasePart1.OperationStats;
+import databasePart1.UserQuery;
+import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.sql.SQLException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import javafx.application.Platform;
 
 
 public class AdminHomePage {
+	// Number of users fetched per keyset page in the "All Users" table
+	private static final int USER_PAGE_SIZE = 100;
+
+	private static final Log LOG = Log.get(AdminHomePage.class);
+
+	// How long the search box waits after the last keystroke before querying
+	private static final Duration SEARCH_DEBOUNCE = Duration.millis(250);
+	private static final String ALL_ROLES = "All roles";
+
+	// How often the System Health window re-reads the metrics
+	private static final Duration HEALTH_REFRESH_INTERVAL = Duration.seconds(2);
+
 	private final DatabaseHelper databaseHelper;
+	private final AsyncDatabaseHelper asyncDatabase;
 	private final UserRolePrivileges userRolePrivileges;
 
 	public AdminHomePage(DatabaseHelper databaseHelper) {
 		this.databaseHelper = databaseHelper;
+		this.asyncDatabase = new AsyncDatabaseHelper(databaseHelper);
 		this.userRolePrivileges = new UserRolePrivileges(databaseHelper);
 	}
 
@@ -36,15 +69,26 @@ public class AdminHomePage {
 
 		// Buttons for admin actions
 		Button inviteUserButton = createButton("Invite User");
+		Button bulkInviteButton = createButton("Bulk Invite");
+		Button importUsersButton = createButton("Import Users");
+		Button exportUsersButton = createButton("Export Users");
 		Button listUsersButton = createButton("List All Users");
+		Button systemHealthButton = createButton("System Health");
 		Button logoutButton = createButton("Logout");
 
 		// Event handlers for buttons
 		inviteUserButton.setOnAction(e -> inviteUser());
+		bulkInviteButton.setOnAction(e -> bulkInviteUsers(primaryStage));
+		importUsersButton.setOnAction(e -> importUsers(primaryStage));
+		exportUsersButton.setOnAction(e -> exportUsers(primaryStage));
 		listUsersButton.setOnAction(e -> listAllUsers());
-		logoutButton.setOnAction(e -> new SetupLoginSelectionPage(databaseHelper).show(primaryStage));
+		systemHealthButton.setOnAction(e -> showSystemHealth());
+		logoutButton.setOnAction(e -> {
+			SessionManager.getInstance().signOut();
+			new SetupLoginSelectionPage(databaseHelper).show(primaryStage);
+		});
 
-		layout.getChildren().addAll(title, inviteUserButton, listUsersButton, logoutButton);
+		layout.getChildren().addAll(title, inviteUserButton, bulkInviteButton, importUsersButton, exportUsersButton, listUsersButton, systemHealthButton, logoutButton);
 
 		Scene scene = new Scene(layout, 800, 600);
 		primaryStage.setScene(scene);
@@ -67,14 +111,10 @@ public class AdminHomePage {
 		dialog.setTitle("Role Selection");
 		dialog.setHeaderText("Select roles for the new user:");
 
-		CheckBox adminCheckBox = new CheckBox("Admin");
-		CheckBox studentCheckBox = new CheckBox("Student");
-		CheckBox reviewerCheckBox = new CheckBox("Reviewer");
-		CheckBox instructorCheckBox = new CheckBox("Instructor");
-		CheckBox staffCheckBox = new CheckBox("Staff");
+		List<CheckBox> roleCheckBoxes = roleCheckBoxes(List.of());
 
-		VBox checkboxLayout = new VBox(10, adminCheckBox, studentCheckBox, reviewerCheckBox, instructorCheckBox,
-				staffCheckBox);
+		VBox checkboxLayout = new VBox(10);
+		checkboxLayout.getChildren().addAll(roleCheckBoxes);
 		checkboxLayout.setPadding(new Insets(20));
 
 		dialog.getDialogPane().setContent(checkboxLayout);
@@ -82,49 +122,263 @@ public class AdminHomePage {
 
 		dialog.showAndWait().ifPresent(buttonType -> {
 			if (buttonType == ButtonType.OK) {
-				StringBuilder selectedRoles = new StringBuilder();
-				if (adminCheckBox.isSelected())
-					selectedRoles.append("admin,");
-				if (studentCheckBox.isSelected())
-					selectedRoles.append("student,");
-				if (reviewerCheckBox.isSelected())
-					selectedRoles.append("reviewer,");
-				if (instructorCheckBox.isSelected())
-					selectedRoles.append("instructor,");
-				if (staffCheckBox.isSelected())
-					selectedRoles.append("staff,");
-
-				if (selectedRoles.length() > 0)
-					selectedRoles.setLength(selectedRoles.length() - 1);
-
-				String invitationCode = userRolePrivileges.generateInvitationCodeWithRoles(selectedRoles.toString());
-				showAlert("Invitation Code",
-						"Generated Invitation Code: " + invitationCode + "\nRoles: " + selectedRoles);
+				String selectedRoles = selectedRoles(roleCheckBoxes);
+
+				AsyncDatabaseHelper.onFxThread(
+						asyncDatabase.submit(db -> userRolePrivileges.generateInvitationCodeWithRoles(selectedRoles)),
+						invitationCode -> showAlert("Invitation Code",
+								"Generated Invitation Code: " + invitationCode + "\nRoles: " + selectedRoles),
+						e -> showAlert("Error", "Could not generate an invitation code."));
 			}
 		});
 	}
 
-	private void resetPasswordForSelectedUser(TableView<User> table) {
-    User selectedUser = table.getSelectionModel().getSelectedItem();
-    if (selectedUser == null) {
-        showAlert("No Selection", "Please select a user to reset their password.");
-        return;
-    }
+	// Generates many invitation codes for one role set and saves them to a file
+	private void bulkInviteUsers(Stage owner) {
+		Dialog<ButtonType> dialog = new Dialog<>();
+		dialog.setTitle("Bulk Invitation");
+		dialog.setHeaderText("Select roles and the number of codes to generate:");
+
+		List<CheckBox> roleCheckBoxes = roleCheckBoxes(List.of());
 
-    try {
-        // Reset the user's password
-        userRolePrivileges.resetPassword(selectedUser.getUserName());
-        showAlert("Password Reset", "A temporary password has been set for user: " + selectedUser.getUserName());
+		Spinner<Integer> countSpinner = new Spinner<>(1, 100000, 100, 100);
+		countSpinner.setEditable(true);
 
-        // Refresh the table data
-        table.getItems().clear(); // Clear the current items
-        table.getItems().addAll(userRolePrivileges.getAllUsersAsObjects()); // Reload updated user data
-    } catch (SQLException e) {
-        showAlert("Error", "Failed to reset the password for user: " + selectedUser.getUserName());
-        e.printStackTrace();
+		VBox content = new VBox(10);
+		content.getChildren().addAll(roleCheckBoxes);
+		content.getChildren().addAll(new Label("Number of codes:"), countSpinner);
+		content.setPadding(new Insets(20));
 
-    }
-}
+		dialog.getDialogPane().setContent(content);
+		dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+
+		dialog.showAndWait().ifPresent(buttonType -> {
+			if (buttonType != ButtonType.OK) {
+				return;
+			}
+			String roles = selectedRoles(roleCheckBoxes);
+			if (roles.isEmpty()) {
+				showAlert("No Roles", "Please select at least one role.");
+				return;
+			}
+
+			FileChooser fileChooser = new FileChooser();
+			fileChooser.setTitle("Save Invitation Codes");
+			fileChooser.setInitialFileName("invitation-codes.txt");
+			File file = fileChooser.showSaveDialog(owner);
+			if (file == null) {
+				return;
+			}
+
+			int count = countSpinner.getValue();
+			AsyncDatabaseHelper.onFxThread(
+					asyncDatabase.submit(db -> userRolePrivileges.generateInvitationCampaign(roles, count, file.toPath())),
+					generated -> showAlert("Invitation Codes",
+							generated + " invitation codes for roles " + roles + " were saved to:\n" + file),
+					e -> {
+						showAlert("Error", "Could not generate the invitation codes: " + e.getMessage());
+						LOG.error("Invitation code generation failed", e);
+					});
+		});
+	}
+
+	// Imports a CSV roster in batches; rejected rows are saved next to it as <name>-rejects.csv
+	private void importUsers(Stage owner) {
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Import Users");
+		fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+		File file = fileChooser.showOpenDialog(owner);
+		if (file == null) {
+			return;
+		}
+		String baseName = file.getName().replaceFirst("\\.csv$", "");
+		Path rejectFile = file.toPath().resolveSibling(baseName + "-rejects.csv");
+
+		Stage progressStage = new Stage();
+		progressStage.initOwner(owner);
+		progressStage.setTitle("Importing Users");
+		Label progressLabel = new Label("Reading " + file.getName() + "...");
+		ProgressIndicator progressIndicator = new ProgressIndicator();
+		progressIndicator.setMaxSize(32, 32);
+		Button cancelButton = new Button("Cancel");
+		VBox content = new VBox(10, progressIndicator, progressLabel, cancelButton);
+		content.setAlignment(Pos.CENTER);
+		content.setPadding(new Insets(20));
+		progressStage.setScene(new Scene(content, 360, 160));
+
+		UserCsvImporter importer = new UserCsvImporter(databaseHelper);
+		CompletableFuture<UserCsvImporter.Progress> importCall = asyncDatabase.submit(db ->
+				importer.importFile(file.toPath(), rejectFile,
+						progress -> Platform.runLater(() -> progressLabel.setText(progress.toString()))));
+		cancelButton.setOnAction(e -> {
+			importCall.cancel(true); // Batches already committed stay imported
+			progressStage.close();
+		});
+		progressStage.setOnHidden(e -> importCall.cancel(true));
+		progressStage.show();
+
+		AsyncDatabaseHelper.onFxThread(importCall,
+				result -> {
+					progressStage.close();
+					String message = result.getImported() + " users imported, " + result.getRejected() + " rejected.";
+					if (result.getRejected() > 0) {
+						message += "\nRejected rows were saved to:\n" + rejectFile;
+					}
+					showAlert("Import Users", message);
+				},
+				e -> {
+					progressStage.close();
+					showAlert("Error", "Could not import the users: " + e.getMessage());
+					LOG.error("User import failed", e);
+				});
+	}
+
+	// Streams every user to a CSV or JSON Lines file; the format follows the chosen file type
+	private void exportUsers(Stage owner) {
+		FileChooser.ExtensionFilter csvFilter = new FileChooser.ExtensionFilter("CSV files", "*.csv");
+		FileChooser.ExtensionFilter jsonFilter = new FileChooser.ExtensionFilter("JSON Lines files", "*.jsonl");
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setTitle("Export Users");
+		fileChooser.getExtensionFilters().addAll(csvFilter, jsonFilter);
+		fileChooser.setInitialFileName("users.csv");
+		File file = fileChooser.showSaveDialog(owner);
+		if (file == null) {
+			return;
+		}
+		UserExporter.Format format = file.getName().endsWith(".jsonl")
+				|| (fileChooser.getSelectedExtensionFilter() == jsonFilter && !file.getName().endsWith(".csv"))
+				? UserExporter.Format.JSON_LINES : UserExporter.Format.CSV;
+
+		UserExporter exporter = new UserExporter(databaseHelper);
+		AsyncDatabaseHelper.onFxThread(asyncDatabase.submit(db -> exporter.export(file.toPath(), format)),
+				count -> showAlert("Export Users", count + " users were exported to:\n" + file),
+				e -> {
+					showAlert("Error", "Could not export the users: " + e.getMessage());
+					LOG.error("User export failed", e);
+				});
+	}
+
+	// Copies the current selection, since it changes as rows are updated or removed
+	private List<User> selectedUsers(TableView<User> table) {
+		return new ArrayList<>(table.getSelectionModel().getSelectedItems());
+	}
+
+	private static List<String> userNames(List<User> users) {
+		List<String> userNames = new ArrayList<>(users.size());
+		for (User user : users) {
+			userNames.add(user.getUserName());
+		}
+		return userNames;
+	}
+
+	// Asks which role to add to or remove from the selected users
+	private Optional<String> chooseRole(String title) {
+		ChoiceDialog<String> dialog = new ChoiceDialog<>("student", UserRolePrivileges.ROLES);
+		dialog.setTitle(title);
+		dialog.setHeaderText(null);
+		dialog.setContentText("Role:");
+		return dialog.showAndWait();
+	}
+
+	// Adds or removes one role for every selected user with a single batch; the table updates from the change events
+	private void changeRoleForSelectedUsers(TableView<User> table, boolean add) {
+		List<User> selected = selectedUsers(table);
+		if (selected.isEmpty()) {
+			showAlert("No Selection", "Please select the users to change.");
+			return;
+		}
+		chooseRole(add ? "Add Role" : "Remove Role").ifPresent(role -> {
+			List<String> userNames = userNames(selected);
+			AsyncDatabaseHelper.onFxThread(asyncDatabase.submit(db -> add
+					? userRolePrivileges.addRoleToUsers(userNames, role)
+					: userRolePrivileges.removeRoleFromUsers(userNames, role)),
+				changed -> {
+					showAlert("Success", "Role " + role + (add ? " added to " : " removed from ") + changed + " users.");
+				},
+				e -> {
+					showAlert("Error", "Failed to change the role: " + e.getMessage());
+					LOG.error("Role change failed", e);
+				});
+		});
+	}
+
+	private void resetPasswordForSelectedUsers(TableView<User> table) {
+		List<User> selected = selectedUsers(table);
+		if (selected.isEmpty()) {
+			showAlert("No Selection", "Please select the users whose passwords should be reset.");
+			return;
+		}
+
+		// Reset every selected password in one batch off the FX thread
+		AsyncDatabaseHelper.onFxThread(asyncDatabase.submit(db -> userRolePrivileges.resetPasswords(userNames(selected))),
+			updated -> {
+				showAlert("Password Reset", "A temporary password has been set for " + updated + " users.");
+			},
+			e -> {
+				showAlert("Error", "Failed to reset the passwords.");
+				LOG.error("Password reset failed", e);
+			});
+	}
+
+	/**
+	 * Shows the latency, call and error counts of every DatabaseHelper and UserRolePrivileges
+	 * operation, with the connection pool, user cache, username filter and login throttle
+	 * counters below.
+	 * The window refreshes itself while it is open.
+	 */
+	private void showSystemHealth() {
+	    Stage healthStage = new Stage();
+	    healthStage.setTitle("System Health");
+
+	    TableView<OperationStats> table = new TableView<>();
+	    table.getColumns().add(healthColumn("Component", OperationStats::getComponent));
+	    table.getColumns().add(healthColumn("Operation", OperationStats::getName));
+	    table.getColumns().add(healthColumn("Calls", stats -> String.valueOf(stats.getCalls())));
+	    table.getColumns().add(healthColumn("Errors", stats -> String.valueOf(stats.getErrors())));
+	    table.getColumns().add(healthColumn("Mean ms", stats -> String.format("%.3f", stats.getMeanMillis())));
+	    table.getColumns().add(healthColumn("p50 ms", stats -> String.format("%.3f", stats.getP50Millis())));
+	    table.getColumns().add(healthColumn("p99 ms", stats -> String.format("%.3f", stats.getP99Millis())));
+	    table.getColumns().add(healthColumn("Max ms", stats -> String.format("%.3f", stats.getMaxMillis())));
+	    table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+	    table.setPlaceholder(new Label("No operations recorded yet."));
+
+	    Label poolLabel = new Label();
+	    Label cacheLabel = new Label();
+	    Label filterLabel = new Label();
+	    Label throttleLabel = new Label();
+	    Runnable refresh = () -> {
+	        table.getItems().setAll(OperationMetrics.allOperations());
+	        table.refresh();
+	        poolLabel.setText(String.valueOf(databaseHelper.getConnectionPool()));
+	        cacheLabel.setText(String.valueOf(databaseHelper.getUserCache()));
+	        filterLabel.setText(String.valueOf(databaseHelper.getUsernameFilter()));
+	        throttleLabel.setText(String.valueOf(databaseHelper.getLoginThrottle()));
+	    };
+	    refresh.run();
+
+	    Timeline refresher = new Timeline(new KeyFrame(HEALTH_REFRESH_INTERVAL, e -> refresh.run()));
+	    refresher.setCycleCount(Timeline.INDEFINITE);
+	    refresher.play();
+	    healthStage.setOnHidden(e -> refresher.stop());
+
+	    Button resetButton = new Button("Reset Counters");
+	    resetButton.setOnAction(e -> {
+	        OperationMetrics.resetAll();
+	        refresh.run();
+	    });
+
+	    VBox layout = new VBox(10, table, poolLabel, cacheLabel, filterLabel, throttleLabel, resetButton);
+	    layout.setPadding(new Insets(20));
+	    VBox.setVgrow(table, Priority.ALWAYS);
+	    healthStage.setScene(new Scene(layout, 900, 600));
+	    healthStage.show();
+	}
+
+	private static TableColumn<OperationStats, String> healthColumn(String title, Function<OperationStats, String> value) {
+	    TableColumn<OperationStats, String> column = new TableColumn<>(title);
+	    column.setCellValueFactory(data -> new ReadOnlyStringWrapper(value.apply(data.getValue())));
+	    return column;
+	}
 
 	private void listAllUsers() {
 	    Stage userListStage = new Stage();
@@ -157,52 +411,107 @@ public class AdminHomePage {
 	    table.getColumns().addAll(nameCol, emailCol, userNameCol, roleCol, passwordCol);
 	    table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
-	    // Fetch and populate users
-	    try {
-	        List<User> users = userRolePrivileges.getAllUsersAsObjects();
-	        if (users.isEmpty()) {
-	            System.out.println("No users available to display.");
-	        } else {
-	            System.out.println("Displaying " + users.size() + " users.");
+	    // Sorting happens in the database; only the indexed columns can be sorted
+	    nameCol.setUserData(UserQuery.Field.NAME);
+	    emailCol.setUserData(UserQuery.Field.EMAIL);
+	    userNameCol.setUserData(UserQuery.Field.USERNAME);
+	    roleCol.setSortable(false);
+	    passwordCol.setSortable(false);
+
+	    // Fetch the first page of users; later pages load as the table is scrolled
+	    UserTablePager pager = new UserTablePager(databaseHelper, table, USER_PAGE_SIZE);
+	    table.setPlaceholder(new Label("No users available to display."));
+
+	    // Server-side search: a type-ahead prefix on one field plus an optional role
+	    TextField searchField = new TextField();
+	    searchField.setPromptText("Search");
+	    ChoiceBox<UserQuery.Field> searchFieldChoice = new ChoiceBox<>(
+	            FXCollections.observableArrayList(UserQuery.Field.values()));
+	    searchFieldChoice.setValue(UserQuery.Field.USERNAME);
+	    ChoiceBox<String> roleChoice = new ChoiceBox<>(FXCollections.observableArrayList(ALL_ROLES));
+	    roleChoice.getItems().addAll(UserRolePrivileges.ROLES);
+	    roleChoice.setValue(ALL_ROLES);
+
+	    Runnable runSearch = () -> {
+	        TableColumn<User, ?> sortColumn = table.getSortOrder().isEmpty() ? null : table.getSortOrder().get(0);
+	        UserQuery query = UserQuery.all()
+	                .searching(searchFieldChoice.getValue(), searchField.getText())
+	                .withRole(ALL_ROLES.equals(roleChoice.getValue()) ? null : roleChoice.getValue())
+	                .sortedBy(sortColumn == null ? null : (UserQuery.Field) sortColumn.getUserData(),
+	                        sortColumn != null && sortColumn.getSortType() == TableColumn.SortType.DESCENDING);
+	        if (!query.equals(pager.getQuery())) {
+	            pager.reload(query);
 	        }
-	        table.getItems().setAll(users);
-	    } catch (SQLException e) {
-	        System.err.println("Error loading users: " + e.getMessage());
-	    }
+	    };
+
+	    // Wait for a pause in typing so each keystroke does not start a query
+	    PauseTransition searchDelay = new PauseTransition(SEARCH_DEBOUNCE);
+	    searchDelay.setOnFinished(e -> runSearch.run());
+	    searchField.textProperty().addListener((obs, oldText, newText) -> searchDelay.playFromStart());
+	    searchFieldChoice.setOnAction(e -> runSearch.run());
+	    roleChoice.setOnAction(e -> runSearch.run());
+
+	    // Clicking a column header reloads the table sorted by that column instead of sorting the loaded rows
+	    table.setSortPolicy(t -> {
+	        runSearch.run();
+	        return true;
+	    });
+	    pager.reload();
+
+	    HBox searchBar = new HBox(10, new Label("Search"), searchFieldChoice, searchField, new Label("Role"), roleChoice);
+	    searchBar.setAlignment(Pos.CENTER_LEFT);
+	    HBox.setHgrow(searchField, Priority.ALWAYS);
+
+	    // Several users can be selected; the batch actions apply to all of them
+	    table.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
-	    // Toolbar with "Manage User Roles" and "Reset Password" buttons
+	    // Toolbar with the user management actions
 	    ToolBar toolBar = new ToolBar();
 	    Button manageRolesButton = new Button("Manage User Roles");
 	    manageRolesButton.setOnAction(e -> manageUserRolesForSelectedUser(table));
+	    Button addRoleButton = new Button("Add Role");
+	    addRoleButton.setOnAction(e -> changeRoleForSelectedUsers(table, true));
+	    Button removeRoleButton = new Button("Remove Role");
+	    removeRoleButton.setOnAction(e -> changeRoleForSelectedUsers(table, false));
 
 	    Button resetPasswordButton = new Button("Reset Password");
-	    resetPasswordButton.setOnAction(e -> resetPasswordForSelectedUser(table));
-	    Button deleteUserButton = new Button("Delete User");
-	    deleteUserButton.setOnAction(e -> deleteUserWithConfirmation(table));
+	    resetPasswordButton.setOnAction(e -> resetPasswordForSelectedUsers(table));
+	    Button deleteUserButton = new Button("Delete Users");
+	    deleteUserButton.setOnAction(e -> deleteUsersWithConfirmation(table));
 
-	    toolBar.getItems().addAll(manageRolesButton, resetPasswordButton, deleteUserButton);
+	    // Spinner shown while a page of users is being fetched
+	    ProgressIndicator loadingIndicator = new ProgressIndicator();
+	    loadingIndicator.setMaxSize(20, 20);
+	    loadingIndicator.visibleProperty().bind(pager.loadingProperty());
+
+	    toolBar.getItems().addAll(manageRolesButton, addRoleButton, removeRoleButton, resetPasswordButton, deleteUserButton, loadingIndicator);
 
 	    // Layout for the window
-	    VBox layout = new VBox(toolBar, table);
+	    VBox layout = new VBox(searchBar, toolBar, table);
 	    layout.setSpacing(10);
 	    layout.setPadding(new Insets(20));
 
 	    Scene scene = new Scene(layout, 900, 600);
 	    userListStage.setScene(scene);
+	    userListStage.setOnHidden(e -> pager.close()); // Stop loading and listening once the window is closed
 	    userListStage.show();
 	}
 	
-	// Helper method to delete a user with confirmation
-	private void deleteUserWithConfirmation(TableView<User> table) {
-	    User selectedUser = table.getSelectionModel().getSelectedItem();
-	    if (selectedUser == null) {
-	        showAlert("No Selection", "Please select a user to delete.");
+	// Helper method to delete the selected users with confirmation
+	private void deleteUsersWithConfirmation(TableView<User> table) {
+	    List<User> selected = selectedUsers(table);
+	    if (selected.isEmpty()) {
+	        showAlert("No Selection", "Please select the users to delete.");
 	        return;
 	    }
 
 	    String currentUserName = getCurrentUserName(); // Fetch the current logged-in user
+	    if (currentUserName == null) {
+	        showAlert("Session Expired", "Your session has expired. Please log in again.");
+	        return;
+	    }
 
-	    if (selectedUser.getUserName().equals(currentUserName)) {
+	    if (selected.stream().anyMatch(user -> user.getUserName().equals(currentUserName))) {
 	        showAlert("Error", "You cannot delete your own account.");
 	        return;
 	    }
@@ -210,18 +519,40 @@ public class AdminHomePage {
 	    Alert confirmationAlert = new Alert(Alert.AlertType.CONFIRMATION);
 	    confirmationAlert.setTitle("Confirm Deletion");
 	    confirmationAlert.setHeaderText(null);
-	    confirmationAlert.setContentText("Are you sure you want to delete user: " + selectedUser.getUserName() + "?");
+	    confirmationAlert.setContentText(selected.size() == 1
+	            ? "Are you sure you want to delete user: " + selected.get(0).getUserName() + "?"
+	            : "Are you sure you want to delete " + selected.size() + " users?");
 
 	    confirmationAlert.showAndWait().ifPresent(response -> {
 	        if (response == ButtonType.OK) {
-	            {
-	                // Delete user
-	                userRolePrivileges.deleteUser(selectedUser.getUserName());
-
-	                // Refresh the table data
-	                table.getItems().remove(selectedUser);
-	                showAlert("Success", "User " + selectedUser.getUserName() + " deleted successfully.");
-	            } 
+	            // Delete every selected user in one batch off the FX thread
+	            AsyncDatabaseHelper.onFxThread(asyncDatabase.submit(db -> userRolePrivileges.deleteUsers(userNames(selected))),
+	                deleted -> {
+	                    // The deleted rows leave every open table through the change events. Admins are
+	                    // skipped, and so are users someone else deleted since the table was loaded.
+	                    Set<String> deletedNames = new HashSet<>(deleted);
+	                    int skippedAdmins = 0;
+	                    int missing = 0;
+	                    for (User user : selected) {
+	                        if (deletedNames.contains(user.getUserName())) {
+	                            continue;
+	                        }
+	                        if (DatabaseHelper.parseRoles(user.getRole()).contains("admin")) {
+	                            skippedAdmins++;
+	                        } else {
+	                            missing++;
+	                        }
+	                    }
+	                    String message = deleted.size() + " users deleted successfully.";
+	                    if (skippedAdmins > 0) {
+	                        message += "\n" + skippedAdmins + " admin users were not deleted.";
+	                    }
+	                    if (missing > 0) {
+	                        message += "\n" + missing + " users no longer existed.";
+	                    }
+	                    showAlert("Success", message);
+	                },
+	                e -> showAlert("Error", "Failed to delete the selected users."));
 	        }
 	    });
 	}
@@ -232,6 +563,10 @@ public class AdminHomePage {
 	        showAlert("No Selection", "Please select a user to manage roles.");
 	        return;
 	    }
+	    if (table.getSelectionModel().getSelectedItems().size() > 1) {
+	        showAlert("Multiple Selection", "Please select a single user, or use Add Role and Remove Role.");
+	        return;
+	    }
 
 	    String userName = selectedUser.getUserName();
 	    String currentRoles = selectedUser.getRole();  // Get current roles
@@ -241,21 +576,11 @@ public class AdminHomePage {
 	    dialog.setTitle("Manage Roles for " + userName);
 	    dialog.setHeaderText("Select roles for the user:");
 
-	    // Create checkboxes for each role
-	    CheckBox adminCheckBox = new CheckBox("Admin");
-	    CheckBox studentCheckBox = new CheckBox("Student");
-	    CheckBox reviewerCheckBox = new CheckBox("Reviewer");
-	    CheckBox instructorCheckBox = new CheckBox("Instructor");
-	    CheckBox staffCheckBox = new CheckBox("Staff");
-
-	    // Tick checkboxes for the current roles
-	    if (currentRoles.contains("admin")) adminCheckBox.setSelected(true);
-	    if (currentRoles.contains("student")) studentCheckBox.setSelected(true);
-	    if (currentRoles.contains("reviewer")) reviewerCheckBox.setSelected(true);
-	    if (currentRoles.contains("instructor")) instructorCheckBox.setSelected(true);
-	    if (currentRoles.contains("staff")) staffCheckBox.setSelected(true);
-
-	    VBox checkboxLayout = new VBox(10, adminCheckBox, studentCheckBox, reviewerCheckBox, instructorCheckBox, staffCheckBox);
+	    // One checkbox per role, ticked for the roles the user already has
+	    List<CheckBox> roleCheckBoxes = roleCheckBoxes(DatabaseHelper.parseRoles(currentRoles));
+
+	    VBox checkboxLayout = new VBox(10);
+	    checkboxLayout.getChildren().addAll(roleCheckBoxes);
 	    checkboxLayout.setPadding(new Insets(20));
 
 	    dialog.getDialogPane().setContent(checkboxLayout);
@@ -263,35 +588,48 @@ public class AdminHomePage {
 
 	    dialog.showAndWait().ifPresent(buttonType -> {
 	        if (buttonType == ButtonType.OK) {
-	            // Collect selected roles
-	            StringBuilder selectedRoles = new StringBuilder();
-	            if (adminCheckBox.isSelected()) selectedRoles.append("admin,");
-	            if (studentCheckBox.isSelected()) selectedRoles.append("student,");
-	            if (reviewerCheckBox.isSelected()) selectedRoles.append("reviewer,");
-	            if (instructorCheckBox.isSelected()) selectedRoles.append("instructor,");
-	            if (staffCheckBox.isSelected()) selectedRoles.append("staff,");
-
-	            if (selectedRoles.length() > 0) selectedRoles.setLength(selectedRoles.length() - 1);  // Remove the last comma
-
-	            try {
-	                // Update the roles in the database
-	                userRolePrivileges.updateUserRoles(userName, selectedRoles.toString());
-
-	                // Refresh the TableView by reloading data
-	                table.getItems().clear();  // Clear existing items
-	                table.getItems().addAll(userRolePrivileges.getAllUsersAsObjects());  // Reload updated user data
-
-	                showAlert("Success", "Roles updated successfully for " + userName + ".");
-	            } catch (SQLException e) {
-	                showAlert("Error", "Failed to update roles for " + userName + ".");
-	                e.printStackTrace();
-	            }
+	            String selectedRoles = selectedRoles(roleCheckBoxes);
+
+	            // Update the roles in the database off the FX thread
+	            AsyncDatabaseHelper.onFxThread(asyncDatabase.run(db -> userRolePrivileges.updateUserRoles(userName, selectedRoles)),
+	                done -> {
+	                    // The row updates itself from the change event
+	                    showAlert("Success", "Roles updated successfully for " + userName + ".");
+	                },
+	                e -> {
+	                    showAlert("Error", "Failed to update roles for " + userName + ".");
+	                    LOG.error("Role update failed", e);
+	                });
 	        }
 	    });
 	}
 	
+	// One checkbox per known role, in UserRolePrivileges.ROLES order; the role name is the user data
+	private static List<CheckBox> roleCheckBoxes(List<String> ticked) {
+	    List<CheckBox> checkBoxes = new ArrayList<>(UserRolePrivileges.ROLES.size());
+	    for (String role : UserRolePrivileges.ROLES) {
+	        CheckBox checkBox = new CheckBox(Character.toUpperCase(role.charAt(0)) + role.substring(1));
+	        checkBox.setUserData(role);
+	        checkBox.setSelected(ticked.contains(role));
+	        checkBoxes.add(checkBox);
+	    }
+	    return checkBoxes;
+	}
+
+	// The ticked roles as a comma-separated list, or "" if none are ticked
+	private static String selectedRoles(List<CheckBox> checkBoxes) {
+	    List<String> roles = new ArrayList<>();
+	    for (CheckBox checkBox : checkBoxes) {
+	        if (checkBox.isSelected()) {
+	            roles.add((String) checkBox.getUserData());
+	        }
+	    }
+	    return String.join(",", roles);
+	}
+
+	// The signed-in admin, or null if the session has expired
 	private String getCurrentUserName() {
-	    return SessionManager.getInstance().getCurrentUserName(); // Replace with your session management logic
+	    return SessionManager.getInstance().getCurrentUserName();
 	}
 
 	// Helper method to show alerts
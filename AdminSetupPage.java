@@ -2,21 +2,26 @@ package application;
 
 import javafx.scene.control.TextField;
 import databasePart1.DatabaseHelper;
+import databasePart1.Log;
 import javafx.stage.Stage;
 import javafx.scene.layout.VBox;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.Scene;
-import java.sql.SQLException;
 
 
 
 public class AdminSetupPage {
+    private static final Log LOG = Log.get(AdminSetupPage.class);
+
     private final DatabaseHelper databaseHelper;
+    private final AsyncDatabaseHelper asyncDatabase;
 
     public AdminSetupPage(DatabaseHelper databaseHelper) {
         this.databaseHelper = databaseHelper;
+        this.asyncDatabase = new AsyncDatabaseHelper(databaseHelper);
     }
 
     public void show(Stage primaryStage) {
@@ -44,6 +49,11 @@ public class AdminSetupPage {
 
         Button setupButton = new Button("Setup");
 
+        // Shown while the administrator account is being registered
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setMaxSize(24, 24);
+        progressIndicator.setVisible(false);
+
         // Label to display error messages
         Label errorLabel = new Label();
         errorLabel.setStyle("-fx-text-fill: red; -fx-font-size: 12px;");
@@ -78,23 +88,27 @@ public class AdminSetupPage {
                   errMessage += confirmPassErrMessage;
             errorLabel.setText(errMessage); // Set the errorLabel with the complete error message
             } else {
-                try {
-                    // Register the admin user in the database with name and email
-                    User user = new User(userName, password, "admin", name, email);
-                    databaseHelper.register(user);
-                    System.out.println("Administrator setup completed.");
+                // Register the admin user in the database with name and email, off the FX thread
+                User user = new User(userName, password, "admin", name, email);
+                errorLabel.setText("");
+                setupButton.setDisable(true);
+                progressIndicator.setVisible(true);
+                AsyncDatabaseHelper.onFxThread(asyncDatabase.register(user), done -> {
+                    LOG.info("Administrator setup completed", "userName", userName);
 
                     // Navigate to the User Login Page
 	                  // The first user must login after creating the admin account
 	                  new UserLoginPage(databaseHelper).show(primaryStage);
-                } catch (SQLException e) {
-                    System.err.println("Database error: " + e.getMessage());
-                    e.printStackTrace();
-                }
+                }, e -> {
+                    setupButton.setDisable(false);
+                    progressIndicator.setVisible(false);
+                    LOG.error("Database error during administrator setup", e);
+                    errorLabel.setText("An error occurred while setting up the administrator. Please try again.");
+                });
             }
         });
 
-        VBox layout = new VBox(10, nameField, emailField, userNameField, passwordField, confirmPassField, setupButton, errorLabel);
+        VBox layout = new VBox(10, nameField, emailField, userNameField, passwordField, confirmPassField, setupButton, progressIndicator, errorLabel);
         layout.setStyle("-fx-padding: 20; -fx-alignment: center;");
 
         primaryStage.setScene(new Scene(layout, 800, 400));
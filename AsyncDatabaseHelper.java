@@ -0,0 +1,155 @@
+package application;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import databasePart1.DatabaseHelper;
+import databasePart1.InvitationRedemption;
+import databasePart1.UserPage;
+import databasePart1.UserPrincipal;
+import databasePart1.UserQuery;
+import javafx.application.Platform;
+
+/**
+ * The AsyncDatabaseHelper class runs DatabaseHelper calls on virtual threads so that the
+ * JavaFX application thread never waits on the database. Every call returns a
+ * CompletableFuture; cancelling it interrupts the worker, and {@link #onFxThread} delivers
+ * the outcome back on the JavaFX application thread.
+ */
+public class AsyncDatabaseHelper {
+
+	// One virtual thread per call; they are cheap and never keep the JVM alive
+	private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final DatabaseHelper databaseHelper;
+
+	public AsyncDatabaseHelper(DatabaseHelper databaseHelper) {
+		this.databaseHelper = databaseHelper;
+	}
+
+	// A unit of database work that runs off the JavaFX application thread
+	@FunctionalInterface
+	public interface DatabaseCall<T> {
+		T call(DatabaseHelper databaseHelper) throws Exception;
+	}
+
+	// A unit of database work with no result
+	@FunctionalInterface
+	public interface DatabaseAction {
+		void run(DatabaseHelper databaseHelper) throws Exception;
+	}
+
+	/**
+	 * Runs a call against the DatabaseHelper on a virtual thread.
+	 *
+	 * @param call The database work to run.
+	 * @return A future for the result. Cancelling it interrupts the call if it is still running.
+	 */
+	public <T> CompletableFuture<T> submit(DatabaseCall<T> call) {
+		CancellableFuture<T> result = new CancellableFuture<>();
+		result.task = EXECUTOR.submit(() -> {
+			if (result.isDone()) {
+				return; // Cancelled before it started
+			}
+			try {
+				result.complete(call.call(databaseHelper));
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			}
+		});
+		return result;
+	}
+
+	// Runs an action against the DatabaseHelper on a virtual thread
+	public CompletableFuture<Void> run(DatabaseAction action) {
+		return submit(db -> {
+			action.run(db);
+			return null;
+		});
+	}
+
+	/**
+	 * Delivers the outcome of a future on the JavaFX application thread. Nothing is delivered
+	 * if the future was cancelled, since the screen that started it is no longer interested.
+	 *
+	 * @param future    The future to observe.
+	 * @param onSuccess Called with the result when the future completes normally.
+	 * @param onFailure Called with the underlying exception when the future fails.
+	 */
+	public static <T> void onFxThread(CompletableFuture<T> future, Consumer<T> onSuccess,
+			Consumer<Throwable> onFailure) {
+		future.whenComplete((value, error) -> {
+			if (future.isCancelled()) {
+				return;
+			}
+			Platform.runLater(() -> {
+				if (error == null) {
+					onSuccess.accept(value);
+				} else {
+					onFailure.accept(unwrap(error));
+				}
+			});
+		});
+	}
+
+	// Strips the wrapper exceptions added by CompletableFuture
+	public static Throwable unwrap(Throwable error) {
+		while ((error instanceof CompletionException || error instanceof CancellationException)
+				&& error.getCause() != null) {
+			error = error.getCause();
+		}
+		return error;
+	}
+
+	// Typed wrappers for the calls the UI makes
+
+	public CompletableFuture<UserPrincipal> authenticate(String userName, String password) {
+		return submit(db -> db.authenticate(userName, password));
+	}
+
+	public CompletableFuture<Boolean> doesUserExist(String userName) {
+		return submit(db -> db.doesUserExist(userName));
+	}
+
+	public CompletableFuture<Void> register(User user) {
+		return run(db -> db.register(user));
+	}
+
+	public CompletableFuture<List<String>> getInvitationRoles(String code) {
+		return submit(db -> db.getInvitationRoles(code));
+	}
+
+	public CompletableFuture<InvitationRedemption> redeemInvitationCode(String code, User user) {
+		return submit(db -> db.redeemInvitationCode(code, user));
+	}
+
+	public CompletableFuture<List<User>> getUsers(Collection<String> userNames) {
+		return submit(db -> db.getUsers(userNames));
+	}
+
+	public CompletableFuture<UserPage> searchUsers(UserQuery query, UserPage previous, int pageSize) {
+		return submit(db -> db.searchUsers(query, previous, pageSize));
+	}
+
+	// A CompletableFuture whose cancel() also interrupts the worker thread
+	private static final class CancellableFuture<T> extends CompletableFuture<T> {
+		private volatile Future<?> task;
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			Future<?> running = task;
+			if (cancelled && running != null) {
+				running.cancel(true);
+			}
+			return cancelled;
+		}
+	}
+}
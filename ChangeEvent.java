@@ -0,0 +1,36 @@
+package databasePart1;
+
+/**
+ * The ChangeEvent class describes one committed change to a user or an invitation code.
+ * It only names the row that changed; subscribers that need the new values read them back,
+ * so an event never carries stale data or a password.
+ */
+public final class ChangeEvent {
+
+	public enum Entity { USER, INVITATION }
+
+	public enum Type { INSERT, UPDATE, DELETE }
+
+	private final Entity entity;
+	private final Type type;
+	private final String key;
+
+	public ChangeEvent(Entity entity, Type type, String key) {
+		this.entity = entity;
+		this.type = type;
+		this.key = key;
+	}
+
+	public Entity getEntity() { return entity; }
+	public Type getType() { return type; }
+
+	// The userName for USER events, the code for INVITATION events
+	public String getKey() { return key; }
+
+	public boolean isUser() { return entity == Entity.USER; }
+
+	@Override
+	public String toString() {
+		return entity + " " + type + " " + key;
+	}
+}
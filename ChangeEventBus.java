@@ -0,0 +1,70 @@
+package databasePart1;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ChangeEventBus class delivers the changes committed through DatabaseHelper to every
+ * subscriber in the process. All events of one transaction are published together, so a
+ * batch of 500 deletes reaches a subscriber as one list rather than 500 calls.
+ *
+ * Listeners run on the thread that committed the change, after the commit. They must be
+ * quick and must not throw; UI listeners hand the events over to their own thread.
+ */
+public class ChangeEventBus {
+
+	private static final Log LOG = Log.get(ChangeEventBus.class);
+
+	// Receives the events of one committed transaction
+	@FunctionalInterface
+	public interface Listener {
+		void onChanges(List<ChangeEvent> events);
+	}
+
+	// Cancels a subscription; closing it twice is harmless
+	public interface Subscription extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	// Subscriptions are rare and publishes are frequent, so iteration must not lock
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	public Subscription subscribe(Listener listener) {
+		listeners.add(listener);
+		return () -> listeners.remove(listener);
+	}
+
+	public void publish(ChangeEvent event) {
+		publish(Collections.singletonList(event));
+	}
+
+	public void publish(List<ChangeEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		published.add(events.size());
+		if (listeners.isEmpty()) {
+			return;
+		}
+		List<ChangeEvent> delivered = Collections.unmodifiableList(events);
+		for (Listener listener : listeners) {
+			try {
+				listener.onChanges(delivered);
+			} catch (RuntimeException e) {
+				// One broken subscriber must not fail the write that was already committed
+				failures.increment();
+				LOG.error("Change event listener failed", e);
+			}
+		}
+	}
+
+	public int getListenerCount() { return listeners.size(); }
+	public long getPublishedCount() { return published.sum(); }
+	public long getListenerFailures() { return failures.sum(); }
+}
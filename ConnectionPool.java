@@ -0,0 +1,371 @@
+package databasePart1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ConnectionPool class keeps a bounded set of open JDBC connections to the database.
+ * Callers borrow a connection and give it back by closing it, so the usual
+ * try-with-resources blocks in DatabaseHelper return the connection to the pool
+ * instead of tearing down the physical H2 connection.
+ *
+ * Every physical connection also keeps a small LRU cache of prepared statements for the
+ * queries registered in {@link NamedQuery}, see {@link #prepare(Connection, NamedQuery)}.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+	// Idle connections are re-validated only after sitting unused for this long
+	private static final long VALIDATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final int maxSize;
+	private final long maxWaitMillis;
+	private final int statementCacheSize;
+
+	private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+	private final Semaphore permits;
+	private volatile boolean closed = false;
+
+	// Pool metrics
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final AtomicInteger openCount = new AtomicInteger();
+	private static final Log LOG = Log.get(ConnectionPool.class);
+
+	private final LongAdder borrowCount = new LongAdder();
+	private final LongAdder createdCount = new LongAdder();
+	private final LongAdder discardedCount = new LongAdder();
+	private final LongAdder waitTimeoutCount = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+
+	// Statement cache metrics, summed over every pooled connection
+	private final LongAdder statementCacheHits = new LongAdder();
+	private final LongAdder statementCacheMisses = new LongAdder();
+	private final LongAdder statementCacheEvictions = new LongAdder();
+
+	public ConnectionPool(String url, String user, String password, int maxSize, long maxWaitMillis) {
+		this(url, user, password, maxSize, maxWaitMillis, NamedQuery.values().length);
+	}
+
+	public ConnectionPool(String url, String user, String password, int maxSize, long maxWaitMillis,
+			int statementCacheSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+		}
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.maxSize = maxSize;
+		this.maxWaitMillis = maxWaitMillis;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Borrows a connection from the pool, waiting up to the configured max-wait time when
+	 * every connection is in use. Closing the returned connection hands it back to the pool.
+	 *
+	 * @return A validated connection that is owned by the caller until it is closed.
+	 * @throws SQLException If the pool is closed, the wait times out or a new connection cannot be opened.
+	 */
+	public Connection borrow() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed.");
+		}
+
+		long waitStart = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+				waitTimeoutCount.increment();
+				throw new SQLTransientConnectionException(
+						"Timed out after " + maxWaitMillis + " ms waiting for a database connection.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection.", e);
+		}
+		totalWaitNanos.add(System.nanoTime() - waitStart);
+
+		try {
+			PooledConnection pooled = takeIdle();
+			if (pooled == null) {
+				pooled = open();
+			}
+			activeCount.incrementAndGet();
+			borrowCount.increment();
+			return pooled.lease();
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the cached prepared statement for a named query on a connection borrowed from
+	 * this pool, preparing it on first use. The statement belongs to the pooled connection:
+	 * callers bind parameters and close their result sets, but must not close the statement.
+	 *
+	 * @param conn  A connection obtained from {@link #borrow()} that has not been returned yet.
+	 * @param query The registered query to run.
+	 * @return A prepared statement with its parameters cleared.
+	 * @throws SQLException If the statement cannot be prepared.
+	 */
+	public static PreparedStatement prepare(Connection conn, NamedQuery query) throws SQLException {
+		if (!Proxy.isProxyClass(conn.getClass()) || !(Proxy.getInvocationHandler(conn) instanceof Lease)) {
+			throw new IllegalArgumentException("Connection was not borrowed from a ConnectionPool.");
+		}
+		PooledConnection pooled = ((Lease) Proxy.getInvocationHandler(conn)).pooled;
+		if (pooled == null) {
+			throw new SQLException("Connection has already been returned to the pool.");
+		}
+		return pooled.statement(query);
+	}
+
+	// Takes the most recently returned idle connection, discarding any that fail validation
+	private PooledConnection takeIdle() {
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			if (pooled.isUsable()) {
+				return pooled;
+			}
+			discard(pooled);
+		}
+		return null;
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection physical = DriverManager.getConnection(url, user, password);
+		openCount.incrementAndGet();
+		createdCount.increment();
+		return new PooledConnection(physical);
+	}
+
+	// Called when a borrower closes its connection
+	private void release(PooledConnection pooled) {
+		activeCount.decrementAndGet();
+		try {
+			if (closed || !pooled.reset()) {
+				discard(pooled);
+			} else {
+				idle.offerFirst(pooled);
+			}
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void discard(PooledConnection pooled) {
+		discardedCount.increment();
+		openCount.decrementAndGet();
+		pooled.closePhysical();
+	}
+
+	// Closes every idle connection; connections still on loan are closed as they come back.
+	@Override
+	public void close() {
+		closed = true;
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			discard(pooled);
+		}
+	}
+
+	public boolean isClosed() { return closed; }
+
+	// Pool metrics
+	public int getMaxSize() { return maxSize; }
+	public int getActiveCount() { return activeCount.get(); }
+	public int getIdleCount() { return idle.size(); }
+	public int getOpenCount() { return openCount.get(); }
+	public int getWaitingCount() { return permits.getQueueLength(); }
+	public long getBorrowCount() { return borrowCount.sum(); }
+	public long getCreatedCount() { return createdCount.sum(); }
+	public long getDiscardedCount() { return discardedCount.sum(); }
+	public long getWaitTimeoutCount() { return waitTimeoutCount.sum(); }
+	public long getStatementCacheHits() { return statementCacheHits.sum(); }
+	public long getStatementCacheMisses() { return statementCacheMisses.sum(); }
+	public long getStatementCacheEvictions() { return statementCacheEvictions.sum(); }
+
+	public double getStatementCacheHitRatio() {
+		long hits = statementCacheHits.sum();
+		long total = hits + statementCacheMisses.sum();
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public double getAverageWaitMillis() {
+		long borrows = borrowCount.sum();
+		return borrows == 0 ? 0.0 : totalWaitNanos.sum() / (borrows * 1_000_000.0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ConnectionPool[active=%d, idle=%d, open=%d/%d, waiting=%d, borrows=%d, created=%d, "
+				+ "discarded=%d, timeouts=%d, avgWait=%.3f ms, stmtHits=%d, stmtMisses=%d, stmtEvictions=%d]",
+				getActiveCount(), getIdleCount(), getOpenCount(), maxSize, getWaitingCount(), getBorrowCount(),
+				getCreatedCount(), getDiscardedCount(), getWaitTimeoutCount(), getAverageWaitMillis(),
+				getStatementCacheHits(), getStatementCacheMisses(), getStatementCacheEvictions());
+	}
+
+	/**
+	 * A physical connection owned by the pool. Each borrow hands out a fresh proxy so that a
+	 * caller holding on to a closed connection can never touch the next borrower's session.
+	 */
+	private final class PooledConnection {
+		private final Connection physical;
+		private long lastReturnedNanos = System.nanoTime();
+
+		// Access-ordered so the least recently used statement is evicted first
+		private final Map<NamedQuery, PreparedStatement> statements =
+				new LinkedHashMap<NamedQuery, PreparedStatement>(16, 0.75f, true) {
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<NamedQuery, PreparedStatement> eldest) {
+						if (size() <= statementCacheSize) {
+							return false;
+						}
+						statementCacheEvictions.increment();
+						closeQuietly(eldest.getValue());
+						return true;
+					}
+				};
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+		}
+
+		// Only the current borrower touches the cache, so no locking is needed here
+		PreparedStatement statement(NamedQuery query) throws SQLException {
+			PreparedStatement pstmt = statements.get(query);
+			if (pstmt != null && !pstmt.isClosed()) {
+				statementCacheHits.increment();
+				pstmt.clearParameters();
+				return pstmt;
+			}
+			statementCacheMisses.increment();
+			pstmt = physical.prepareStatement(query.getSql());
+			statements.put(query, pstmt);
+			return pstmt;
+		}
+
+		Connection lease() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new Lease(this));
+		}
+
+		// Checks an idle connection before it is handed out again
+		boolean isUsable() {
+			try {
+				if (physical.isClosed()) {
+					return false;
+				}
+				if (System.nanoTime() - lastReturnedNanos < VALIDATION_INTERVAL_NANOS) {
+					return true;
+				}
+				return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		// Restores the default session state before the connection goes back to the idle list
+		boolean reset() {
+			try {
+				if (physical.isClosed()) {
+					return false;
+				}
+				if (!physical.getAutoCommit()) {
+					physical.rollback();
+					physical.setAutoCommit(true);
+				}
+				if (physical.isReadOnly()) {
+					physical.setReadOnly(false);
+				}
+				physical.clearWarnings();
+				lastReturnedNanos = System.nanoTime();
+				return true;
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+
+		void closePhysical() {
+			for (PreparedStatement pstmt : statements.values()) {
+				closeQuietly(pstmt);
+			}
+			statements.clear();
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				LOG.warn("Could not close a pooled connection", e);
+			}
+		}
+	}
+
+	private static void closeQuietly(PreparedStatement pstmt) {
+		try {
+			pstmt.close();
+		} catch (SQLException e) {
+			LOG.warn("Could not close a cached statement", e);
+		}
+	}
+
+	// Forwards calls to the physical connection until the borrower closes it
+	private final class Lease implements InvocationHandler {
+		private volatile PooledConnection pooled;
+
+		Lease(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					synchronized (this) {
+						if (pooled != null) {
+							PooledConnection returned = pooled;
+							pooled = null;
+							release(returned);
+						}
+					}
+					return null;
+				case "isClosed":
+					return pooled == null;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "PooledConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+				default:
+					break;
+			}
+
+			PooledConnection current = pooled;
+			if (current == null) {
+				throw new SQLException("Connection has already been returned to the pool.");
+			}
+			try {
+				return method.invoke(current.physical, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
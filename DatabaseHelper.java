@@ -1,14 +1,25 @@
 package databasePart1;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.sql.*;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.UUID;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 import application.User;
@@ -28,143 +39,507 @@ public class DatabaseHelper {
 	static final String USER = "sa"; 
 	static final String PASS = ""; 
 
-	private Connection connection = null;
-	private Statement statement = null; 
+	// Connection pool settings
+	static final int POOL_SIZE = 10;
+	static final long POOL_MAX_WAIT_MILLIS = 5000;
+
+	// Rows per JDBC batch for bulk inserts
+	static final int BATCH_SIZE = 500;
+	private static final int IMPORT_MAX_ATTEMPTS = 3;
+
+	// Bulk invitation codes use the full code column width: 32^10 possible codes
+	private static final char[] CODE_ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789".toCharArray();
+	private static final int BULK_CODE_LENGTH = 10;
+	private static final SecureRandom CODE_RANDOM = new SecureRandom();
+
+	// Invitation codes expire a week after they are issued. Used and expired codes are purged
+	// every hour, in batches that are each their own short transaction.
+	static final long INVITATION_TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+	static final int PURGE_BATCH_SIZE = 500;
+	static final int PURGE_MAX_BATCHES = 200;
+	static final long PURGE_INTERVAL_MINUTES = 60;
+
+	// User directory cache settings
+	static final int USER_CACHE_SIZE = 10000;
+	static final long USER_CACHE_TTL_MINUTES = 5;
+
+	// Username Bloom filter settings
+	static final int USERNAME_FILTER_MIN_CAPACITY = 10000;
+	static final double USERNAME_FILTER_FALSE_POSITIVE_RATE = 0.01;
+	static final double USERNAME_FILTER_MAX_DELETE_DRIFT = 0.10;
+
+	private final String dbUrl;
+	private volatile ConnectionPool connectionPool = null;
+	private ScheduledExecutorService invitationPurger = null; // Guarded by this
+	private boolean schemaMigrated = false; // Guarded by this
+
+	// Every existing userName, so checks for free names can skip the database.
+	// While a rebuild is scanning the table, new names go into both filters.
+	private volatile UsernameBloomFilter usernameFilter = null;
+	private volatile UsernameBloomFilter rebuildingFilter = null;
+	private final AtomicBoolean filterRebuildRunning = new AtomicBoolean(false);
+
+	// Existence and roles by userName; every write method below keeps it in sync
+	private final UserDirectoryCache userCache =
+			new UserDirectoryCache(USER_CACHE_SIZE, USER_CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+	private static final UserDirectoryCache.Entry MISSING_USER = new UserDirectoryCache.Entry(false, new ArrayList<>(), 0);
+
+	// Every committed write below publishes its changes here, after the cache is updated
+	private final ChangeEventBus changeEvents = new ChangeEventBus();
+
+	// Sign-in attempts per userName and per source; callers check it before authenticate
+	private final LoginThrottle loginThrottle = new LoginThrottle();
+
+	private static final Log LOG = Log.get(DatabaseHelper.class);
+
+	// Latency, call and error counts of every public operation below, shared by all instances and
+	// exported through JMX
+	private static final OperationMetrics METRICS = OperationMetrics.forComponent("DatabaseHelper");
+	private static final OperationStats IS_DATABASE_EMPTY_STATS = METRICS.operation("isDatabaseEmpty");
+	private static final OperationStats REGISTER_STATS = METRICS.operation("register");
+	private static final OperationStats AUTHENTICATE_STATS = METRICS.operation("authenticate");
+	private static final OperationStats REBUILD_USERNAME_FILTER_STATS = METRICS.operation("rebuildUsernameFilter");
+	private static final OperationStats DOES_USER_EXIST_STATS = METRICS.operation("doesUserExist");
+	private static final OperationStats GET_USER_ROLES_STATS = METRICS.operation("getUserRoles");
+	private static final OperationStats GENERATE_INVITATION_CODE_STATS = METRICS.operation("generateInvitationCode");
+	private static final OperationStats GENERATE_INVITATION_CODES_STATS = METRICS.operation("generateInvitationCodes");
+	private static final OperationStats IMPORT_USER_BATCH_STATS = METRICS.operation("importUserBatch");
+	private static final OperationStats GET_INVITATION_ROLES_STATS = METRICS.operation("getInvitationRoles");
+	private static final OperationStats REDEEM_INVITATION_CODE_STATS = METRICS.operation("redeemInvitationCode");
+	private static final OperationStats GET_ROLES_FROM_INVITATION_CODE_STATS = METRICS.operation("getRolesFromInvitationCode");
+	private static final OperationStats PURGE_INVITATION_CODES_STATS = METRICS.operation("purgeInvitationCodes");
+	private static final OperationStats PRECOMPILE_STATEMENTS_STATS = METRICS.operation("precompileStatements");
+	private static final OperationStats UPDATE_USER_PASSWORD_STATS = METRICS.operation("updateUserPassword");
+	private static final OperationStats DELETE_USER_STATS = METRICS.operation("deleteUser");
+	private static final OperationStats IS_ADMIN_STATS = METRICS.operation("isAdmin");
+	private static final OperationStats GET_ALL_USERS_STATS = METRICS.operation("getAllUsers");
+	private static final OperationStats GET_ALL_USER_DETAILS_STATS = METRICS.operation("getAllUserDetails");
+	private static final OperationStats FOR_EACH_USER_STATS = METRICS.operation("forEachUser");
+	private static final OperationStats UPDATE_USER_ROLES_STATS = METRICS.operation("updateUserRoles");
+	private static final OperationStats GET_ALL_USERNAMES_STATS = METRICS.operation("getAllUsernames");
+	private static final OperationStats SEARCH_USERS_STATS = METRICS.operation("searchUsers");
+	private static final OperationStats GET_USERS_STATS = METRICS.operation("getUsers");
+	private static final OperationStats ADD_USER_ROLE_STATS = METRICS.operation("addUserRole");
+	private static final OperationStats REMOVE_USER_ROLE_STATS = METRICS.operation("removeUserRole");
+	private static final OperationStats COUNT_ADMINS_STATS = METRICS.operation("countAdmins");
+	private static final OperationStats ADD_ROLE_TO_USERS_STATS = METRICS.operation("addRoleToUsers");
+	private static final OperationStats REMOVE_ROLE_FROM_USERS_STATS = METRICS.operation("removeRoleFromUsers");
+	private static final OperationStats UPDATE_USER_PASSWORDS_STATS = METRICS.operation("updateUserPasswords");
+	private static final OperationStats DELETE_USERS_STATS = METRICS.operation("deleteUsers");
+
+	// Uses the application's file database in the user's home directory
+	public DatabaseHelper() {
+		this(DB_URL);
+	}
+
+	// Uses another H2 database, e.g. "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1" for benchmarks
+	public DatabaseHelper(String dbUrl) {
+		this.dbUrl = dbUrl;
+	}
 	
+	// Borrows a pooled connection. Closing it returns it to the pool rather than disconnecting.
 	public Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+		ConnectionPool pool = connectionPool;
+        if (pool == null || pool.isClosed()) {
             connectToDatabase();
+            pool = connectionPool;
+            if (pool == null) {
+                // openDatabase() gave up without a pool, e.g. the JDBC driver is missing
+                throw new SQLException("database not open");
+            }
         }
-        return connection;
+        return pool.borrow();
     }
 
-	//	PreparedStatement pstmt
+	// Returns the user directory cache so its metrics can be inspected
+	public UserDirectoryCache getUserCache() {
+		return userCache;
+	}
+
+	// Returns the bus that announces committed changes to users and invitation codes
+	public ChangeEventBus getChangeEvents() {
+		return changeEvents;
+	}
+
+	// Returns the login throttle shared by every sign-in path
+	public LoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
+
+	private void publishUserChange(ChangeEvent.Type type, String userName) {
+		changeEvents.publish(new ChangeEvent(ChangeEvent.Entity.USER, type, userName));
+	}
+
+	private void publishUserChanges(ChangeEvent.Type type, List<String> userNames) {
+		List<ChangeEvent> events = new ArrayList<>(userNames.size());
+		for (String userName : userNames) {
+			events.add(new ChangeEvent(ChangeEvent.Entity.USER, type, userName));
+		}
+		changeEvents.publish(events);
+	}
+
+	// Returns the username Bloom filter so its metrics can be inspected, or null before it is built
+	public UsernameBloomFilter getUsernameFilter() {
+		return usernameFilter;
+	}
+
+	// Returns the connection pool so its metrics can be inspected
+	public ConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
+	// Opens the database and builds the username filter. Later calls are no-ops while the pool is open.
+	public synchronized void connectToDatabase() throws SQLException {
+		if (openDatabase()) {
+			rebuildUsernameFilter();
+		}
+	}
 
-	public void connectToDatabase() throws SQLException {
+	/**
+	 * Opens the connection pool and, the first time, brings the schema up to date, but leaves
+	 * the username filter unbuilt so that startup can build it alongside other work. Reopening
+	 * the pool does not check the schema again.
+	 *
+	 * @return True if this call opened the pool, false if it was already open.
+	 */
+	public synchronized boolean openDatabase() throws SQLException {
+		if (connectionPool != null && !connectionPool.isClosed()) {
+			return false;
+		}
 		try {
 			Class.forName(JDBC_DRIVER); // Load the JDBC driver
-			System.out.println("Connecting to database...");
-			connection = DriverManager.getConnection(DB_URL, USER, PASS);
-			statement = connection.createStatement(); 
-			// You can use this command to clear the database and restart from fresh.
-			//statement.execute("DROP ALL OBJECTS");
+			LOG.info("Connecting to database", "url", dbUrl);
+			ConnectionPool pool = new ConnectionPool(dbUrl, USER, PASS, POOL_SIZE, POOL_MAX_WAIT_MILLIS);
+			if (!schemaMigrated) {
+				try (Connection conn = pool.borrow()) {
+					// You can use this command to clear the database and restart from fresh.
+					//conn.createStatement().execute("DROP ALL OBJECTS");
 
-			createTables();  // Create the necessary tables if they don't exist
+					SchemaMigrations.migrate(conn);
+				} catch (SQLException e) {
+					pool.close();
+					throw e;
+				}
+				schemaMigrated = true;
+			}
+			connectionPool = pool;
+			startInvitationPurger();
+			return true;
 		} catch (ClassNotFoundException e) {
-			System.err.println("JDBC Driver not found: " + e.getMessage());
+			LOG.error("JDBC driver not found", e);
+			return false;
 		}
 	}
-	
 
-	private void createTables() throws SQLException {
-	    String userTable = "CREATE TABLE IF NOT EXISTS cse360users ("
-	            + "id INT AUTO_INCREMENT PRIMARY KEY, "
-	            + "name VARCHAR(255), "       // New column for Name
-	            + "email VARCHAR(255), "      // New column for Email
-	            + "userName VARCHAR(255) UNIQUE, "
-	            + "password VARCHAR(255), "
-	            + "role VARCHAR(255))";
-	    statement.execute(userTable);
+	/**
+	 * Prepares every named query on the given number of pooled connections at once, so the
+	 * first calls after startup find their statements already in the connection's cache.
+	 *
+	 * @param connections How many connections to prepare; at most the pool size.
+	 * @return The number of statements prepared.
+	 */
+	public int precompileStatements(int connections) throws SQLException {
+	    return PRECOMPILE_STATEMENTS_STATS.time(() -> {
+	        List<Connection> borrowed = new ArrayList<>();
+	        try {
+	            // Held together, so each borrow gets a different connection
+	            for (int i = 0; i < Math.min(connections, POOL_SIZE); i++) {
+	                borrowed.add(getConnection());
+	            }
+	            int prepared = 0;
+	            for (Connection conn : borrowed) {
+	                for (NamedQuery query : NamedQuery.values()) {
+	                    prepare(conn, query);
+	                    prepared++;
+	                }
+	            }
+	            return prepared;
+	        } finally {
+	            for (Connection conn : borrowed) {
+	                conn.close();
+	            }
+	        }
+	    });
+	}
 	
 
-		
-		// Create the invitation codes table
-	    String invitationCodesTable = "CREATE TABLE IF NOT EXISTS InvitationCodes ("
-	            + "code VARCHAR(10) PRIMARY KEY, "
-	            + "isUsed BOOLEAN DEFAULT FALSE, "
-	            + "role VARCHAR(255))";
-	    statement.execute(invitationCodesTable);
+	// Splits a comma-separated role string into trimmed, distinct role names
+	public static List<String> parseRoles(String roles) {
+	    List<String> parsed = new ArrayList<>();
+	    if (roles == null) {
+	        return parsed;
+	    }
+	    for (String role : roles.split(",")) {
+	        String trimmed = role.trim();
+	        if (!trimmed.isEmpty() && !parsed.contains(trimmed)) {
+	            parsed.add(trimmed);
+	        }
+	    }
+	    return parsed;
 	}
 
+	// Inserts the user row and its roles on the given connection, inside the caller's transaction
+	private int insertUser(Connection conn, User user, List<String> roles) throws SQLException {
+	    PreparedStatement pstmt = prepare(conn, NamedQuery.REGISTER_USER);
+	    pstmt.setString(1, user.getUserName());
+	    pstmt.setString(2, user.getPassword());
+	    pstmt.setString(3, user.getName());
+	    pstmt.setString(4, user.getEmail());
+	    int rowsInserted = pstmt.executeUpdate();
+	    insertRoles(conn, user.getUserName(), roles);
+	    return rowsInserted;
+	}
+
+	// Adds every role in the list to the user with one batched round-trip
+	private void insertRoles(Connection conn, String userName, List<String> roles) throws SQLException {
+	    PreparedStatement pstmt = prepare(conn, NamedQuery.ADD_ROLE);
+	    for (String role : roles) {
+	        pstmt.setString(1, role);
+	        pstmt.setString(2, userName);
+	        pstmt.addBatch();
+	    }
+	    pstmt.executeBatch();
+	}
+
+
+	// Returns the cached prepared statement for a registered query on a pooled connection.
+	// The statement is owned by the connection, so callers must not close it.
+	public PreparedStatement prepare(Connection conn, NamedQuery query) throws SQLException {
+		return ConnectionPool.prepare(conn, query);
+	}
 
 	// Check if the database is empty
 	public boolean isDatabaseEmpty() throws SQLException {
-		String query = "SELECT COUNT(*) AS count FROM cse360users";
-		ResultSet resultSet = statement.executeQuery(query);
-		if (resultSet.next()) {
-			return resultSet.getInt("count") == 0;
-		}
-		return true;
+		return IS_DATABASE_EMPTY_STATS.time(() -> {
+			try (Connection conn = getConnection()) {
+				PreparedStatement pstmt = prepare(conn, NamedQuery.COUNT_USERS);
+				try (ResultSet resultSet = pstmt.executeQuery()) {
+					if (resultSet.next()) {
+						return resultSet.getInt("count") == 0;
+					}
+				}
+			}
+			return true;
+		});
 	}
 
-	// Registers a new user in the database.
+	// Registers a new user and their roles in the database in one transaction.
 	public void register(User user) throws SQLException {
-	    String insertUser = "INSERT INTO cse360users (userName, password, role, name, email) VALUES (?, ?, ?, ?, ?)";
-
-	    try (Connection conn = getConnection();  // Ensure a fresh connection
-	         PreparedStatement pstmt = conn.prepareStatement(insertUser)) {
-	         
-	        pstmt.setString(1, user.getUserName());
-	        pstmt.setString(2, user.getPassword());
-	        pstmt.setString(3, user.getRole());
-	        pstmt.setString(4, user.getName());
-	        pstmt.setString(5, user.getEmail());
-
-	        int rowsInserted = pstmt.executeUpdate();
-	        if (rowsInserted > 0) {
-	            System.out.println("User successfully registered: " + user.getUserName());
-	        } else {
-	            System.out.println("Failed to register user: " + user.getUserName());
+	    REGISTER_STATS.timeVoid(() -> {
+	        try (Connection conn = getConnection()) {
+	            conn.setAutoCommit(false);
+	            try {
+	                List<String> roles = parseRoles(user.getRole());
+	                int rowsInserted = insertUser(conn, user, roles);
+	                conn.commit();
+	                userCache.put(user.getUserName(), true, roles);
+	                addToUsernameFilter(user.getUserName());
+	                publishUserChange(ChangeEvent.Type.INSERT, user.getUserName());
+
+	                if (rowsInserted > 0) {
+	                    LOG.info("User registered", "userName", user.getUserName());
+	                } else {
+	                    LOG.warn("User was not registered", "userName", user.getUserName());
+	                }
+	            } catch (SQLException e) {
+	                conn.rollback();
+	                throw e;
+	            }
 	        }
-	    }
+	    });
 	}
 
+	/**
+	 * Verifies a userName and password with a single query and returns the user with all
+	 * of their roles. The password is compared in memory, so no query is repeated per role.
+	 *
+	 * @param userName The userName to sign in as.
+	 * @param password The password to check.
+	 * @return The authenticated principal, or null if the userName or password is wrong.
+	 */
+	public UserPrincipal authenticate(String userName, String password) throws SQLException {
+	    long start = AUTHENTICATE_STATS.start();
+	    try {
+	        UsernameBloomFilter filter = usernameFilter;
+	        if (filter != null && !filter.mightContain(userName)) {
+	            return null; // No such user, no query needed
+	        }
 
+	        long generation = userCache.currentGeneration();
+	        try (Connection conn = getConnection()) {
+	            PreparedStatement pstmt = prepare(conn, NamedQuery.AUTHENTICATE);
+	            pstmt.setString(1, userName);
+	            try (ResultSet rs = pstmt.executeQuery()) {
+	                if (!rs.next()) {
+	                    if (filter != null) {
+	                        filter.recordFalsePositive();
+	                    }
+	                    return null;
+	                }
+	                List<String> roles = parseRoles(rs.getString("role"));
+	                userCache.putIfCurrent(userName, true, roles, generation); // The roles are fresh, keep them
+	                if (!passwordMatches(rs.getString("password"), password)) {
+	                    return null;
+	                }
+	                return new UserPrincipal(rs.getString("userName"), rs.getString("name"), rs.getString("email"), roles);
+	            }
+	        }
+	    } catch (Throwable t) {
+	        AUTHENTICATE_STATS.failed();
+	        throw t;
+	    } finally {
+	        AUTHENTICATE_STATS.stop(start);
+	    }
+	}
 
-	public boolean login(User user) throws SQLException {
-	    String query = "SELECT * FROM cse360users WHERE userName = ? AND password = ? AND role LIKE ?";
-	    
-	    try (Connection conn = getConnection(); 
-	         PreparedStatement pstmt = conn.prepareStatement(query)) {
-	         
-	        pstmt.setString(1, user.getUserName());
-	        pstmt.setString(2, user.getPassword());
-	        pstmt.setString(3, "%" + user.getRole() + "%"); // Allow partial match for role
+	// Compares in constant time so the response time does not reveal how much of the password matched
+	private static boolean passwordMatches(String stored, String supplied) {
+	    if (stored == null || supplied == null) {
+	        return false;
+	    }
+	    return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), supplied.getBytes(StandardCharsets.UTF_8));
+	}
 
-	        try (ResultSet rs = pstmt.executeQuery()) {
-	            return rs.next(); // Returns true if a matching user exists
+	/**
+	 * Builds a new username Bloom filter from cse360users and swaps it in. Names registered
+	 * while the table is being scanned are added to the new filter as well, so it never
+	 * misses a committed userName.
+	 */
+	public void rebuildUsernameFilter() throws SQLException {
+	    REBUILD_USERNAME_FILTER_STATS.timeVoid(() -> {
+	        if (!filterRebuildRunning.compareAndSet(false, true)) {
+	            return; // Another rebuild is already running
+	        }
+	        try (Connection conn = getConnection()) {
+	            long userCount;
+	            PreparedStatement count = prepare(conn, NamedQuery.COUNT_USERS);
+	            try (ResultSet rs = count.executeQuery()) {
+	                userCount = rs.next() ? rs.getLong("count") : 0;
+	            }
+
+	            // Leave room to grow before the filter has to be rebuilt again
+	            UsernameBloomFilter filter = new UsernameBloomFilter(
+	                    Math.max(USERNAME_FILTER_MIN_CAPACITY, userCount * 2), USERNAME_FILTER_FALSE_POSITIVE_RATE);
+	            rebuildingFilter = filter;
+	            PreparedStatement pstmt = prepare(conn, NamedQuery.ALL_USERNAMES);
+	            pstmt.setFetchSize(1000);
+	            try (ResultSet rs = pstmt.executeQuery()) {
+	                while (rs.next()) {
+	                    filter.put(rs.getString("userName"));
+	                }
+	            }
+	            usernameFilter = filter; // Visible to writers before rebuildingFilter is cleared
+	        } finally {
+	            rebuildingFilter = null;
+	            filterRebuildRunning.set(false);
 	        }
+	    });
+	}
+
+	// Adds a committed userName to the Bloom filter, and to the one being rebuilt if any.
+	// rebuildingFilter is read first: a rebuild swaps usernameFilter before it clears
+	// rebuildingFilter, so a writer that finds no rebuild in progress either sees the new
+	// filter below or committed early enough for the rebuild's scan to find the name.
+	private void addToUsernameFilter(String userName) {
+	    UsernameBloomFilter rebuilding = rebuildingFilter;
+	    if (rebuilding != null) {
+	        rebuilding.put(userName);
+	    }
+	    UsernameBloomFilter filter = usernameFilter;
+	    if (filter != null) {
+	        filter.put(userName);
+	        scheduleFilterRebuildIfNeeded(filter);
 	    }
 	}
 
+	// Records a deleted userName; its bits stay set until the filter is rebuilt
+	private void removeFromUsernameFilter(String userName) {
+	    UsernameBloomFilter filter = usernameFilter;
+	    if (filter != null) {
+	        filter.recordDelete();
+	        scheduleFilterRebuildIfNeeded(filter);
+	    }
+	}
+
+	// Rebuilds the filter in the background once deletes or growth have made it too inaccurate
+	private void scheduleFilterRebuildIfNeeded(UsernameBloomFilter filter) {
+	    if (filter.needsRebuild(USERNAME_FILTER_MAX_DELETE_DRIFT) && !filterRebuildRunning.get()) {
+	        Thread.ofVirtual().name("username-filter-rebuild").start(() -> {
+	            try {
+	                rebuildUsernameFilter();
+	            } catch (SQLException e) {
+	                LOG.error("Username filter rebuild failed", e);
+	            }
+	        });
+	    }
+	}
+
+	// Answers from memory only: false means the userName is definitely not taken
+	public boolean mightUserExist(String userName) {
+	    UsernameBloomFilter filter = usernameFilter;
+	    return filter == null || filter.mightContain(userName);
+	}
 
-	
 	// Checks if a user already exists in the database based on their userName.
 	public boolean doesUserExist(String userName) {
-	    String query = "SELECT COUNT(*) FROM cse360users WHERE userName = ?";
-
-	    try (Connection conn = getConnection(); 
-	         PreparedStatement pstmt = conn.prepareStatement(query)) {
-	         
-	        pstmt.setString(1, userName);
-	        ResultSet rs = pstmt.executeQuery();
-	        
-	        if (rs.next()) {
-	            return rs.getInt(1) > 0; // Return true if user exists
-	        }
+	    long start = DOES_USER_EXIST_STATS.start();
+	    try {
+	        return lookupUser(userName).exists();
 	    } catch (SQLException e) {
-	        e.printStackTrace();
+	        DOES_USER_EXIST_STATS.failed();
+	        LOG.error("User lookup failed", "userName", userName, e);
+	    } finally {
+	        DOES_USER_EXIST_STATS.stop(start);
 	    }
 	    return false; // Return false if an error occurs / user doesn't exist
 	}
 	
-	// Retrieves the role of a user from the database using their UserName.
+	// Retrieves the roles of a user from the database using their UserName.
 	public List<String> getUserRoles(String userName) throws SQLException {
+	    long start = GET_USER_ROLES_STATS.start();
+	    try {
+	        return new ArrayList<>(lookupUser(userName).getRoles());
+	    } catch (Throwable t) {
+	        GET_USER_ROLES_STATS.failed();
+	        throw t;
+	    } finally {
+	        GET_USER_ROLES_STATS.stop(start);
+	    }
+	}
+
+	// Returns the user's existence and roles from the cache, reading them from the database on a miss
+	private UserDirectoryCache.Entry lookupUser(String userName) throws SQLException {
+	    UsernameBloomFilter filter = usernameFilter;
+	    if (filter != null && !filter.mightContain(userName)) {
+	        return MISSING_USER; // Definitely not in the table, no query needed
+	    }
+
+	    UserDirectoryCache.Entry cached = userCache.get(userName);
+	    if (cached != null) {
+	        return cached;
+	    }
+
+	    long generation = userCache.currentGeneration();
+	    boolean exists = false;
 	    List<String> roles = new ArrayList<>();
-	    String query = "SELECT role FROM cse360users WHERE userName = ?";
-	    
-	    try (Connection conn = getConnection(); 
-	         PreparedStatement pstmt = conn.prepareStatement(query)) {
-	         
+	    try (Connection conn = getConnection()) {
+	        PreparedStatement pstmt = prepare(conn, NamedQuery.USER_ROLES);
 	        pstmt.setString(1, userName);
 	        try (ResultSet rs = pstmt.executeQuery()) {
-	            if (rs.next()) {
-	                String roleString = rs.getString("role"); // Example: "admin,manager"
-	                roles = Arrays.asList(roleString.split(",")); // Convert to List
+	            while (rs.next()) {
+	                exists = true;
+	                String role = rs.getString("role");
+	                if (role != null) {
+	                    roles.add(role);
+	                }
 	            }
 	        }
 	    }
-	    return roles;
+	    if (!exists && filter != null) {
+	        filter.recordFalsePositive();
+	    }
+	    userCache.putIfCurrent(userName, exists, roles, generation);
+	    return new UserDirectoryCache.Entry(exists, roles, 0);
 	}
 
 
@@ -172,115 +547,521 @@ public class DatabaseHelper {
 	// Generates a new invitation code and inserts it into the database.
 	public String generateInvitationCode(String role) {
 	    String code = UUID.randomUUID().toString().substring(0, 4); // Generate a random 4-character code
-	    String query = "INSERT INTO InvitationCodes (code, role) VALUES (?, ?)";
-
-	    try (Connection conn = getConnection(); // Get a fresh connection
-	         PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-	        pstmt.setString(1, code);
-	        pstmt.setString(2, role);
-	        pstmt.executeUpdate();
-	        return code; // Return generated code after successful insertion
 
+	    try {
+	        return GENERATE_INVITATION_CODE_STATS.time(() -> {
+	            try (Connection conn = getConnection()) {
+	                PreparedStatement pstmt = prepare(conn, NamedQuery.INSERT_INVITATION);
+	                pstmt.setString(1, code);
+	                pstmt.setString(2, role);
+	                pstmt.setLong(3, INVITATION_TTL_SECONDS);
+	                pstmt.executeUpdate();
+	                changeEvents.publish(new ChangeEvent(ChangeEvent.Entity.INVITATION, ChangeEvent.Type.INSERT, code));
+	                return code; // Return generated code after successful insertion
+	            }
+	        });
 	    } catch (SQLException e) {
-	        e.printStackTrace();
+	        LOG.error("Invitation code could not be stored", "roles", role, e);
 	    }
 	    return null; // Return null if an error occurs
 	}
 
 
 	
-	// Validates an invitation code to check if it is unused.
-	public boolean validateInvitationCode(String code, String name, String email, String userName, String password) {
-	    String query = "SELECT role FROM InvitationCodes WHERE code = ? AND isUsed = FALSE";
+	/**
+	 * Generates a batch of invitation codes for the given roles and inserts them with JDBC
+	 * batching in a single transaction. Each code is written to the output as it is generated,
+	 * so the codes never need to be held in memory; if an exception is thrown, none of the
+	 * codes were stored and the output should be discarded.
+	 *
+	 * @param role  The comma-separated roles granted by every code.
+	 * @param count The number of codes to generate.
+	 * @param out   Receives one code per line.
+	 * @return The number of codes stored.
+	 */
+	public int generateInvitationCodes(String role, int count, Writer out) throws SQLException, IOException {
+	    // Two checked exceptions, which time() would widen to Exception, so the call is timed by hand
+	    long start = GENERATE_INVITATION_CODES_STATS.start();
+	    try {
+	        // The codes are only kept for change events when someone is listening
+	        List<ChangeEvent> events = changeEvents.getListenerCount() > 0 ? new ArrayList<>(count) : null;
+	        try (Connection conn = getConnection()) {
+	            conn.setAutoCommit(false);
+	            try {
+	                PreparedStatement pstmt = prepare(conn, NamedQuery.INSERT_INVITATION);
+	                char[] code = new char[BULK_CODE_LENGTH];
+	                for (int i = 1; i <= count; i++) {
+	                    for (int c = 0; c < code.length; c++) {
+	                        code[c] = CODE_ALPHABET[CODE_RANDOM.nextInt(CODE_ALPHABET.length)];
+	                    }
+	                    String generated = new String(code);
+	                    pstmt.setString(1, generated);
+	                    pstmt.setString(2, role);
+	                    pstmt.setLong(3, INVITATION_TTL_SECONDS);
+	                    pstmt.addBatch();
+	                    out.write(generated);
+	                    out.write(System.lineSeparator());
+	                    if (events != null) {
+	                        events.add(new ChangeEvent(ChangeEvent.Entity.INVITATION, ChangeEvent.Type.INSERT, generated));
+	                    }
 
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setString(1, code);
-	        ResultSet rs = pstmt.executeQuery();
+	                    if (i % BATCH_SIZE == 0) {
+	                        pstmt.executeBatch();
+	                    }
+	                }
+	                pstmt.executeBatch();
+	                out.flush();
+	                conn.commit();
+	            } catch (SQLException | IOException | RuntimeException e) {
+	                conn.rollback();
+	                throw e;
+	            }
+	        }
+	        if (events != null) {
+	            changeEvents.publish(events);
+	        }
+	        LOG.info("Generated invitation codes", "count", count, "roles", role);
+	        return count;
+	    } catch (Throwable t) {
+	        GENERATE_INVITATION_CODES_STATS.failed();
+	        throw t;
+	    } finally {
+	        GENERATE_INVITATION_CODES_STATS.stop(start);
+	    }
+	}
 
-	        if (rs.next()) {
-	            String role = rs.getString("role");
-	            
-	            // Register the user with name and email included
-	            register(new User(userName, password, role, name, email));
 
-	            // Mark the code as used
-	            markInvitationCodeAsUsed(code);
-	            return true;
+	/**
+	 * Registers a batch of users in one transaction, for bulk imports. Names that are already
+	 * taken are found with one query for the whole batch, invitation codes are checked with
+	 * another and claimed with a batched update, and the users and their roles are written
+	 * with batched inserts.
+	 *
+	 * @param users The users to register; each role string may be empty if the row has a code.
+	 * @param codes The invitation code of each user, or null for users imported without one.
+	 * @return For each user, null if it was registered or the reason it was rejected.
+	 */
+	public List<String> importUserBatch(List<User> users, List<String> codes) throws SQLException {
+	    return IMPORT_USER_BATCH_STATS.time(() -> {
+	        for (int attempt = 1; ; attempt++) {
+	            try {
+	                return tryImportUserBatch(users, codes);
+	            } catch (SQLException e) {
+	                // A name registered concurrently since the dedupe query; it is found on the next attempt
+	                if (!isUniqueViolation(e) || attempt == IMPORT_MAX_ATTEMPTS) {
+	                    throw e;
+	                }
+	            }
+	        }
+	    });
+	}
+
+	private List<String> tryImportUserBatch(List<User> users, List<String> codes) throws SQLException {
+	    List<String> rejections = new ArrayList<>(users.size());
+	    List<List<String>> roles = new ArrayList<>(users.size());
+	    List<Integer> accepted = new ArrayList<>();
+
+	    try (Connection conn = getConnection()) {
+	        conn.setAutoCommit(false);
+	        try {
+	            Set<String> taken = existingUserNames(conn, users);
+	            Map<String, String> liveCodeRoles = new HashMap<>();
+	            Set<String> knownCodes = new HashSet<>();
+	            Set<String> expiredCodes = new HashSet<>();
+	            readInvitations(conn, codes, liveCodeRoles, knownCodes, expiredCodes);
+
+	            // Decide every row before writing anything
+	            Set<String> batchNames = new HashSet<>();
+	            Set<String> batchCodes = new HashSet<>();
+	            for (int i = 0; i < users.size(); i++) {
+	                User user = users.get(i);
+	                String code = codes.get(i);
+	                List<String> userRoles = parseRoles(user.getRole());
+	                String rejection = null;
+	                if (taken.contains(user.getUserName()) || batchNames.contains(user.getUserName())) {
+	                    rejection = "Username already exists";
+	                } else if (code != null) {
+	                    String codeRoles = liveCodeRoles.get(code);
+	                    if (codeRoles == null) {
+	                        rejection = !knownCodes.contains(code) ? "Invalid invitation code"
+	                                : expiredCodes.contains(code) ? "Invitation code expired" : "Invitation code already used";
+	                    } else if (batchCodes.contains(code)) {
+	                        rejection = "Invitation code already used";
+	                    } else if (userRoles.isEmpty()) {
+	                        userRoles = parseRoles(codeRoles);
+	                    } else if (!parseRoles(codeRoles).containsAll(userRoles)) {
+	                        rejection = "Invitation code does not grant the requested roles";
+	                    }
+	                } else if (userRoles.isEmpty()) {
+	                    rejection = "No roles and no invitation code";
+	                }
+	                rejections.add(rejection);
+	                roles.add(userRoles);
+	                if (rejection == null) {
+	                    accepted.add(i);
+	                    batchNames.add(user.getUserName());
+	                    if (code != null) {
+	                        batchCodes.add(code);
+	                    }
+	                }
+	            }
+
+	            claimInvitations(conn, codes, accepted, rejections);
+	            accepted.removeIf(i -> rejections.get(i) != null);
+
+	            PreparedStatement insert = prepare(conn, NamedQuery.REGISTER_USER);
+	            PreparedStatement addRole = prepare(conn, NamedQuery.ADD_ROLE);
+	            for (int i : accepted) {
+	                User user = users.get(i);
+	                insert.setString(1, user.getUserName());
+	                insert.setString(2, user.getPassword());
+	                insert.setString(3, user.getName());
+	                insert.setString(4, user.getEmail());
+	                insert.addBatch();
+	            }
+	            insert.executeBatch();
+	            for (int i : accepted) {
+	                for (String role : roles.get(i)) {
+	                    addRole.setString(1, role);
+	                    addRole.setString(2, users.get(i).getUserName());
+	                    addRole.addBatch();
+	                }
+	            }
+	            addRole.executeBatch();
+	            conn.commit();
+	        } catch (SQLException | RuntimeException e) {
+	            conn.rollback();
+	            throw e;
 	        }
+	    }
+
+	    List<ChangeEvent> events = new ArrayList<>();
+	    for (int i : accepted) {
+	        userCache.put(users.get(i).getUserName(), true, roles.get(i));
+	        addToUsernameFilter(users.get(i).getUserName());
+	        events.add(new ChangeEvent(ChangeEvent.Entity.USER, ChangeEvent.Type.INSERT, users.get(i).getUserName()));
+	        if (codes.get(i) != null) {
+	            events.add(new ChangeEvent(ChangeEvent.Entity.INVITATION, ChangeEvent.Type.UPDATE, codes.get(i)));
+	        }
+	    }
+	    changeEvents.publish(events);
+	    return rejections;
+	}
+
+	// The userNames of the batch that are already in the table. Names the Bloom filter rules out are not queried.
+	private Set<String> existingUserNames(Connection conn, List<User> users) throws SQLException {
+	    UsernameBloomFilter filter = usernameFilter;
+	    List<String> candidates = new ArrayList<>();
+	    for (User user : users) {
+	        if (filter == null || filter.mightContain(user.getUserName())) {
+	            candidates.add(user.getUserName());
+	        }
+	    }
+	    Set<String> taken = new HashSet<>();
+	    if (candidates.isEmpty()) {
+	        return taken;
+	    }
+	    PreparedStatement pstmt = prepare(conn, NamedQuery.EXISTING_USERNAMES);
+	    pstmt.setArray(1, conn.createArrayOf("VARCHAR", candidates.toArray()));
+	    try (ResultSet rs = pstmt.executeQuery()) {
+	        while (rs.next()) {
+	            taken.add(rs.getString("userName"));
+	        }
+	    }
+	    return taken;
+	}
+
+	// Looks up every code of the batch at once; fills the roles of the redeemable ones, the set of all
+	// that exist and the set of unused ones that have expired
+	private void readInvitations(Connection conn, List<String> codes, Map<String, String> liveCodeRoles,
+	        Set<String> knownCodes, Set<String> expiredCodes) throws SQLException {
+	    Set<String> distinct = new HashSet<>();
+	    for (String code : codes) {
+	        if (code != null) {
+	            distinct.add(code);
+	        }
+	    }
+	    if (distinct.isEmpty()) {
+	        return;
+	    }
+	    PreparedStatement pstmt = prepare(conn, NamedQuery.INVITATIONS_BY_CODE);
+	    pstmt.setArray(1, conn.createArrayOf("VARCHAR", distinct.toArray()));
+	    try (ResultSet rs = pstmt.executeQuery()) {
+	        while (rs.next()) {
+	            String code = rs.getString("code");
+	            knownCodes.add(code);
+	            if (rs.getBoolean("isUsed")) {
+	                continue;
+	            }
+	            if (rs.getBoolean("isLive")) {
+	                liveCodeRoles.put(code, rs.getString("role"));
+	            } else {
+	                expiredCodes.add(code);
+	            }
+	        }
+	    }
+	}
+
+	// Claims the codes of the accepted rows with one batch; rows that lost a race for their code are rejected
+	private void claimInvitations(Connection conn, List<String> codes, List<Integer> accepted, List<String> rejections)
+	        throws SQLException {
+	    List<Integer> claiming = new ArrayList<>();
+	    PreparedStatement pstmt = prepare(conn, NamedQuery.MARK_INVITATION_USED);
+	    for (int i : accepted) {
+	        if (codes.get(i) != null) {
+	            pstmt.setString(1, codes.get(i));
+	            pstmt.addBatch();
+	            claiming.add(i);
+	        }
+	    }
+	    if (claiming.isEmpty()) {
+	        return;
+	    }
+	    int[] counts = pstmt.executeBatch();
+	    for (int c = 0; c < counts.length; c++) {
+	        if (counts[c] == 0) {
+	            rejections.set(claiming.get(c), "Invitation code already used");
+	        }
+	    }
+	}
+
+
+	// Returns the roles an unused invitation code grants without redeeming it, or null if the code
+	// is invalid, already used or expired. Used to let the user pick a role before redeemInvitationCode().
+	public List<String> getInvitationRoles(String code) throws SQLException {
+	    return GET_INVITATION_ROLES_STATS.time(() -> {
+	        try (Connection conn = getConnection()) {
+	            PreparedStatement pstmt = prepare(conn, NamedQuery.INVITATION_ROLE);
+	            pstmt.setString(1, code);
+	            try (ResultSet rs = pstmt.executeQuery()) {
+	                return rs.next() ? parseRoles(rs.getString("role")) : null;
+	            }
+	        }
+	    });
+	}
+
+	/**
+	 * Redeems an invitation code and registers the user in a single transaction. The code is
+	 * claimed with a conditional update, so when two sign-ups race for the same code exactly
+	 * one of them succeeds and the other gets ALREADY_USED. Codes past their expiry time are
+	 * never claimed.
+	 *
+	 * @param code The invitation code.
+	 * @param user The new user. If its role is empty the user gets every role the code grants,
+	 *             otherwise each of its roles must be granted by the code.
+	 * @return The outcome; the code is only marked used when the status is REDEEMED.
+	 */
+	public InvitationRedemption redeemInvitationCode(String code, User user) throws SQLException {
+	    return REDEEM_INVITATION_CODE_STATS.time(() -> {
+	        try (Connection conn = getConnection()) {
+	            conn.setAutoCommit(false);
+	            try {
+	                List<String> codeRoles = null;
+	                PreparedStatement claim = prepare(conn, NamedQuery.CLAIM_INVITATION);
+	                claim.setString(1, code);
+	                try (ResultSet rs = claim.executeQuery()) {
+	                    if (rs.next()) {
+	                        codeRoles = parseRoles(rs.getString("role"));
+	                    }
+	                }
+	                if (codeRoles == null) {
+	                    conn.rollback();
+	                    return InvitationRedemption.failed(invitationStatus(conn, code));
+	                }
+
+	                List<String> roles = parseRoles(user.getRole());
+	                if (roles.isEmpty()) {
+	                    roles = codeRoles;
+	                } else if (!codeRoles.containsAll(roles)) {
+	                    conn.rollback();
+	                    return InvitationRedemption.failed(InvitationRedemption.Status.ROLE_NOT_GRANTED);
+	                }
+
+	                insertUser(conn, user, roles);
+	                conn.commit();
+	                userCache.put(user.getUserName(), true, roles);
+	                addToUsernameFilter(user.getUserName());
+	                changeEvents.publish(List.of(
+	                        new ChangeEvent(ChangeEvent.Entity.INVITATION, ChangeEvent.Type.UPDATE, code),
+	                        new ChangeEvent(ChangeEvent.Entity.USER, ChangeEvent.Type.INSERT, user.getUserName())));
+	                LOG.info("User registered with invitation code", "userName", user.getUserName());
+	                return new InvitationRedemption(InvitationRedemption.Status.REDEEMED, roles);
+	            } catch (SQLException e) {
+	                conn.rollback();
+	                if (isUniqueViolation(e)) {
+	                    return InvitationRedemption.failed(InvitationRedemption.Status.USERNAME_TAKEN);
+	                }
+	                throw e;
+	            }
+	        }
+	    });
+	}
+
+	// Tells why a code could not be claimed: already used, expired or never existed
+	private InvitationRedemption.Status invitationStatus(Connection conn, String code) throws SQLException {
+	    PreparedStatement pstmt = prepare(conn, NamedQuery.INVITATION_STATUS);
+	    pstmt.setString(1, code);
+	    try (ResultSet rs = pstmt.executeQuery()) {
+	        if (!rs.next()) {
+	            return InvitationRedemption.Status.INVALID_CODE;
+	        }
+	        return rs.getBoolean("isUsed") ? InvitationRedemption.Status.ALREADY_USED
+	                : InvitationRedemption.Status.EXPIRED;
+	    }
+	}
+
+	// SQLState class 23 with code 505 is a unique or primary key violation
+	private static boolean isUniqueViolation(SQLException e) {
+	    return "23505".equals(e.getSQLState());
+	}
+
+	// Validates an invitation code and registers the user with all of the code's roles.
+	public boolean validateInvitationCode(String code, String name, String email, String userName, String password) {
+	    try {
+	        return redeemInvitationCode(code, new User(userName, password, "", name, email)).isRedeemed();
 	    } catch (SQLException e) {
-	        e.printStackTrace();
+	        LOG.error("Invitation code redemption failed", "userName", userName, e);
 	    }
 	    return false;
 	}
 
-	
-	// Marks the invitation code as used in the database.
-	private void markInvitationCodeAsUsed(String code) {
-	    String query = "UPDATE InvitationCodes SET isUsed = TRUE WHERE code = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setString(1, code);
-	        pstmt.executeUpdate();
-	    } catch (SQLException e) {
-	        e.printStackTrace();
+	/**
+	 * Deletes used and expired invitation codes, PURGE_BATCH_SIZE rows per statement. Each
+	 * statement commits on its own, so no lock is held for longer than one batch, and a run stops
+	 * after PURGE_MAX_BATCHES batches; anything left over is deleted by the next run. A purged
+	 * code reads as INVALID_CODE afterwards.
+	 *
+	 * @return The number of codes deleted.
+	 */
+	public int purgeInvitationCodes() throws SQLException {
+	    return PURGE_INVITATION_CODES_STATS.time(() -> {
+	        // The codes are only kept for change events when someone is listening
+	        List<ChangeEvent> events = changeEvents.getListenerCount() > 0 ? new ArrayList<>() : null;
+	        int purged = 0;
+	        int batches = 0;
+	        try (Connection conn = getConnection()) {
+	            for (NamedQuery query : new NamedQuery[] { NamedQuery.PURGE_USED_INVITATIONS,
+	                    NamedQuery.PURGE_EXPIRED_INVITATIONS }) {
+	                PreparedStatement pstmt = prepare(conn, query);
+	                pstmt.setInt(1, PURGE_BATCH_SIZE);
+	                int deleted = PURGE_BATCH_SIZE;
+	                while (deleted == PURGE_BATCH_SIZE && batches < PURGE_MAX_BATCHES) {
+	                    deleted = 0;
+	                    try (ResultSet rs = pstmt.executeQuery()) {
+	                        while (rs.next()) {
+	                            deleted++;
+	                            if (events != null) {
+	                                events.add(new ChangeEvent(ChangeEvent.Entity.INVITATION, ChangeEvent.Type.DELETE,
+	                                        rs.getString("code")));
+	                            }
+	                        }
+	                    }
+	                    purged += deleted;
+	                    batches++;
+	                }
+	            }
+	        }
+	        if (events != null && !events.isEmpty()) {
+	            changeEvents.publish(events);
+	        }
+	        if (purged > 0) {
+	            LOG.info("Purged invitation codes", "count", purged, "batches", batches);
+	        }
+	        return purged;
+	    });
+	}
+
+	// Runs purgeInvitationCodes() every PURGE_INTERVAL_MINUTES while the database is open
+	private synchronized void startInvitationPurger() {
+	    if (invitationPurger != null) {
+	        return;
 	    }
+	    invitationPurger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+	        Thread thread = new Thread(runnable, "invitation-purger");
+	        thread.setDaemon(true);
+	        return thread;
+	    });
+	    invitationPurger.scheduleWithFixedDelay(() -> {
+	        try {
+	            purgeInvitationCodes();
+	        } catch (SQLException | RuntimeException e) {
+	            // Never let one failure cancel the scheduled task
+	            LOG.warn("Invitation code purge failed", e);
+	        }
+	    }, PURGE_INTERVAL_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
 	}
-	
-	// Retrieves roles associated with a valid invitation code and marks the code as used.
+
+	// Retrieves roles associated with a valid invitation code and marks the code as used,
+	// atomically, so a code can never be handed out twice.
 	public String getRolesFromInvitationCode(String code) {
-	    String query = "SELECT role FROM InvitationCodes WHERE code = ? AND isUsed = FALSE";
-	    
-	    try (Connection conn = getConnection(); 
-	         PreparedStatement pstmt = conn.prepareStatement(query)) {
-	         
-	        pstmt.setString(1, code);
-	        ResultSet rs = pstmt.executeQuery();
-	        
-	        if (rs.next()) {
-	            String roles = rs.getString("role");
-	            markInvitationCodeAsUsed(code); // Mark the code as used
-	            return roles;
-	        }
+	    try {
+	        return GET_ROLES_FROM_INVITATION_CODE_STATS.time(() -> {
+	            try (Connection conn = getConnection()) {
+	                PreparedStatement pstmt = prepare(conn, NamedQuery.CLAIM_INVITATION);
+	                pstmt.setString(1, code);
+	                try (ResultSet rs = pstmt.executeQuery()) {
+	                    if (!rs.next()) {
+	                        return null;
+	                    }
+	                    changeEvents.publish(new ChangeEvent(ChangeEvent.Entity.INVITATION, ChangeEvent.Type.UPDATE, code));
+	                    return rs.getString("role");
+	                }
+	            }
+	        });
 	    } catch (SQLException e) {
-	        e.printStackTrace();
+	        LOG.error("Invitation code could not be claimed", e);
 	    }
 	    return null;  // Return null if the code is invalid or already used
 	}
 
-	public void updateUserPassword(String userName, String newPassword) throws SQLException {
-	    String query = "UPDATE cse360users SET password = ? WHERE userName = ?";
-	    try (Connection conn = getConnection();  // Ensure we get a valid connection
-	         PreparedStatement pstmt = conn.prepareStatement(query)) {
-	        pstmt.setString(1, newPassword);
-	        pstmt.setString(2, userName);
-	        pstmt.executeUpdate();
-	        System.out.println("Password updated for user: " + userName);
-	    }
+	// Returns false if there is no user with the userName
+	public boolean updateUserPassword(String userName, String newPassword) throws SQLException {
+	    return UPDATE_USER_PASSWORD_STATS.time(() -> {
+	        try (Connection conn = getConnection()) {
+	            PreparedStatement pstmt = prepare(conn, NamedQuery.UPDATE_PASSWORD);
+	            pstmt.setString(1, newPassword);
+	            pstmt.setString(2, userName);
+	            if (pstmt.executeUpdate() == 0) {
+	                LOG.warn("Password not updated; no such user", "userName", userName);
+	                return false;
+	            }
+	            loginThrottle.unlock(userName); // A new password lifts any lockout
+	            publishUserChange(ChangeEvent.Type.UPDATE, userName);
+	            LOG.info("Password updated", "userName", userName);
+	            return true;
+	        }
+	    });
 	}
 
 
     // Deletes a user from the database
 	public void deleteUser(String userName) throws SQLException {
-	    String query = "DELETE FROM cse360users WHERE userName = ?";
-	    try (Connection conn = getConnection(); // Create a new connection for this operation
-	         PreparedStatement pstmt = conn.prepareStatement(query)) {
-	        pstmt.setString(1, userName);
-	        pstmt.executeUpdate();
-	    }
+	    DELETE_USER_STATS.timeVoid(() -> {
+	        boolean deleted;
+	        try (Connection conn = getConnection()) {
+	            PreparedStatement pstmt = prepare(conn, NamedQuery.DELETE_USER);
+	            pstmt.setString(1, userName);
+	            deleted = pstmt.executeUpdate() > 0;
+	        }
+	        userCache.put(userName, false, new ArrayList<>());
+	        if (deleted) {
+	            removeFromUsernameFilter(userName);
+	            publishUserChange(ChangeEvent.Type.DELETE, userName);
+	        }
+	    });
 	}
 
 
     // Checks if a user has an admin role
     public boolean isAdmin(String userName) {
-        String query = "SELECT role FROM cse360users WHERE userName = ? AND role = 'admin'";
-        try (Connection conn = getConnection(); // Create a new connection for this operation
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, userName);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                return rs.next(); // Check if a matching record exists
-            }
+        long start = IS_ADMIN_STATS.start();
+        try {
+            return lookupUser(userName).getRoles().contains("admin");
         } catch (SQLException e) {
-            e.printStackTrace();
+            IS_ADMIN_STATS.failed();
+            LOG.error("User lookup failed", "userName", userName, e);
+        } finally {
+            IS_ADMIN_STATS.stop(start);
         }
         return false;
     }
@@ -288,100 +1069,244 @@ public class DatabaseHelper {
 
     // Returns a list of all users with their roles
     public List<String> getAllUsers() throws SQLException {
-
-        List<String> users = new ArrayList<>();
-        String query = "SELECT userName, role FROM cse360users";
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
-            while (rs.next()) {
-                String userInfo = "Username: " + rs.getString("userName") + ", Role: " + rs.getString("role");
-                users.add(userInfo);
+        return GET_ALL_USERS_STATS.time(() -> {
+            List<String> users = new ArrayList<>();
+            try (Connection conn = getConnection()) {
+                PreparedStatement pstmt = prepare(conn, NamedQuery.ALL_USERS);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String userInfo = "Username: " + rs.getString("userName") + ", Role: " + rs.getString("role");
+                        users.add(userInfo);
+                    }
+                }
             }
-        }
-        return users;
+            return users;
+        });
     }
 
     public List<String[]> getAllUserDetails() throws SQLException {
-        List<String[]> userDetails = new ArrayList<>();
-        String query = "SELECT userName, password, role, name, email FROM cse360users"; // ✅ Fetching all 5 columns
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
-            while (rs.next()) {
-                String[] userData = new String[5]; // ✅ Now allocating space for 5 values
-                userData[0] = rs.getString("userName");
-                userData[1] = rs.getString("password");
-                userData[2] = rs.getString("role");
-                userData[3] = rs.getString("name");   // ✅ Fetch name
-                userData[4] = rs.getString("email");  // ✅ Fetch email
-                userDetails.add(userData);
+        return GET_ALL_USER_DETAILS_STATS.time(() -> {
+            List<String[]> userDetails = new ArrayList<>();
+
+            try (Connection conn = getConnection()) {
+                PreparedStatement pstmt = prepare(conn, NamedQuery.ALL_USER_DETAILS);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String[] userData = new String[5]; // ✅ Now allocating space for 5 values
+                        userData[0] = rs.getString("userName");
+                        userData[1] = rs.getString("password");
+                        userData[2] = rs.getString("role");
+                        userData[3] = rs.getString("name");   // ✅ Fetch name
+                        userData[4] = rs.getString("email");  // ✅ Fetch email
+                        userDetails.add(userData);
+                    }
+                }
+            }
+            return userDetails;
+        });
+    }
+
+
+    // Receives the users of a streaming export one at a time
+    @FunctionalInterface
+    public interface UserVisitor {
+        void visit(UserPrincipal user) throws IOException;
+    }
+
+    /**
+     * Walks every user in id order with a forward-only, read-only cursor, so only the rows of
+     * the current fetch are held in memory however large the table is. Passwords are not read.
+     * The walk stops early if the calling thread is interrupted.
+     *
+     * @param fetchSize The number of rows the driver fetches per round trip.
+     * @param visitor   Called once per user.
+     * @return The number of users visited.
+     */
+    public long forEachUser(int fetchSize, UserVisitor visitor) throws SQLException, IOException {
+        // Timed by hand like generateInvitationCodes, since the visitor may throw IOException
+        long start = FOR_EACH_USER_STATS.start();
+        try {
+            try (Connection conn = getConnection()) {
+                conn.setReadOnly(true);
+                // A dedicated statement, since the fetch size is specific to this walk
+                try (PreparedStatement pstmt = conn.prepareStatement(NamedQuery.EXPORT_USERS.getSql(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                    pstmt.setFetchSize(fetchSize);
+                    long count = 0;
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next() && !Thread.currentThread().isInterrupted()) {
+                            visitor.visit(new UserPrincipal(rs.getString("userName"), rs.getString("name"),
+                                    rs.getString("email"), parseRoles(rs.getString("role"))));
+                            count++;
+                        }
+                    }
+                    return count;
+                }
             }
+        } catch (Throwable t) {
+            FOR_EACH_USER_STATS.failed();
+            throw t;
+        } finally {
+            FOR_EACH_USER_STATS.stop(start);
         }
-        return userDetails;
     }
 
 
+    // Replaces all of a user's roles with the given comma-separated roles in one transaction
     public void updateUserRoles(String userName, String roles) throws SQLException {
-        String query = "UPDATE cse360users SET role = ? WHERE userName = ?";
-        try (Connection conn = getConnection(); // Ensure a valid connection
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, roles);
-            pstmt.setString(2, userName);
-            pstmt.executeUpdate();
-            System.out.println("Roles updated for user: " + userName);
-        }
+        UPDATE_USER_ROLES_STATS.timeVoid(() -> {
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    PreparedStatement pstmt = prepare(conn, NamedQuery.REMOVE_ALL_ROLES);
+                    pstmt.setString(1, userName);
+                    pstmt.executeUpdate();
+                    insertRoles(conn, userName, parseRoles(roles));
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    userCache.invalidate(userName);
+                }
+                publishUserChange(ChangeEvent.Type.UPDATE, userName);
+                LOG.info("Roles updated", "userName", userName, "roles", roles);
+            }
+        });
     }
 
 
  // Returns a list of all usernames (for reset password and similar operations)
     public List<String> getAllUsernames() throws SQLException {
-        List<String> usernames = new ArrayList<>();
-        String query = "SELECT userName FROM cse360users";
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
-            while (rs.next()) {
-                usernames.add(rs.getString("userName"));
+        return GET_ALL_USERNAMES_STATS.time(() -> {
+            List<String> usernames = new ArrayList<>();
+            try (Connection conn = getConnection()) {
+                PreparedStatement pstmt = prepare(conn, NamedQuery.ALL_USERNAMES);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        usernames.add(rs.getString("userName"));
+                    }
+                }
             }
-        }
-        return usernames;
+            return usernames;
+        });
     }
     
+    /**
+     * Returns one page of a filtered, sorted search of the users table.
+     *
+     * @param query    The filters and sort order.
+     * @param previous The previous page of the same query, or null for the first page.
+     * @param pageSize The maximum number of users to return.
+     * @return The page, which is the cursor for the next call.
+     */
+    public UserPage searchUsers(UserQuery query, UserPage previous, int pageSize) throws SQLException {
+        return SEARCH_USERS_STATS.time(() -> {
+            boolean afterCursor = previous != null;
+            List<User> users = new ArrayList<>();
+            int lastId = afterCursor ? previous.getLastId() : 0;
+            String lastSortKey = afterCursor ? previous.getLastSortKey() : null;
+            boolean hasMore = false;
+
+            try (Connection conn = getConnection()) {
+                // Not in the statement cache: the SQL depends on the filters. H2 keeps its own
+                // per-session cache of parsed queries, so repeating a search is not re-parsed.
+                try (PreparedStatement pstmt = conn.prepareStatement(query.toSql(afterCursor))) {
+                    query.bind(pstmt, lastSortKey, lastId, afterCursor, pageSize + 1);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            if (users.size() == pageSize) {
+                                hasMore = true;
+                                break;
+                            }
+                            lastId = rs.getInt("id");
+                            if (query.getSortField() != null) {
+                                lastSortKey = rs.getString("sortKey");
+                            }
+                            User user = new User(rs.getString("userName"), rs.getString("password"), rs.getString("role"),
+                                                 rs.getString("name"), rs.getString("email"));
+                            user.setId(lastId);
+                            users.add(user);
+                        }
+                    }
+                }
+            }
+            return new UserPage(users, lastId, lastSortKey, hasMore);
+        });
+    }
+
+    // Reads the current rows of the named users, with their ids, in one query ordered by id; unknown names are left out
+    public List<User> getUsers(Collection<String> userNames) throws SQLException {
+        return GET_USERS_STATS.time(() -> {
+            List<User> users = new ArrayList<>();
+            if (userNames.isEmpty()) {
+                return users;
+            }
+            try (Connection conn = getConnection()) {
+                PreparedStatement pstmt = prepare(conn, NamedQuery.USERS_BY_USERNAME);
+                pstmt.setArray(1, conn.createArrayOf("VARCHAR", userNames.toArray()));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        User user = new User(rs.getString("userName"), rs.getString("password"), rs.getString("role"),
+                                             rs.getString("name"), rs.getString("email"));
+                        user.setId(rs.getInt("id"));
+                        users.add(user);
+                    }
+                }
+            }
+            return users;
+        });
+    }
+
+    // Escapes the LIKE wildcards in user input so it is matched literally
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     // Adds a new role to an existing user
     public void addUserRole(String userName, String newRole) throws SQLException {
-        String query = "UPDATE cse360users SET role = CONCAT(role, ',', ?) WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, newRole);
-            pstmt.setString(2, userName);
-            pstmt.executeUpdate();
-            System.out.println("Role " + newRole + " added to user: " + userName);
-        }
+        ADD_USER_ROLE_STATS.timeVoid(() -> {
+            try (Connection conn = getConnection()) {
+                PreparedStatement pstmt = prepare(conn, NamedQuery.ADD_ROLE);
+                pstmt.setString(1, newRole);
+                pstmt.setString(2, userName);
+                pstmt.executeUpdate();
+                userCache.invalidate(userName);
+                publishUserChange(ChangeEvent.Type.UPDATE, userName);
+                LOG.info("Role added", "userName", userName, "role", newRole);
+            }
+        });
     }
 
     // Removes a role from an existing user
     public void removeUserRole(String userName, String roleToRemove) throws SQLException {
-        String query = "SELECT role FROM cse360users WHERE userName = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, userName);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                String roles = rs.getString("role");
-                String updatedRoles = roles.replace(roleToRemove, "").replaceAll(",{2,}", ",").replaceAll("^,|,$", "");
-                String updateQuery = "UPDATE cse360users SET role = ? WHERE userName = ?";
-                try (PreparedStatement updatePstmt = connection.prepareStatement(updateQuery)) {
-                    updatePstmt.setString(1, updatedRoles);
-                    updatePstmt.setString(2, userName);
-                    updatePstmt.executeUpdate();
-                    System.out.println("Role " + roleToRemove + " removed from user: " + userName);
+        REMOVE_USER_ROLE_STATS.timeVoid(() -> {
+            try (Connection conn = getConnection()) {
+                PreparedStatement pstmt = prepare(conn, NamedQuery.REMOVE_ROLE);
+                pstmt.setString(1, roleToRemove);
+                pstmt.setString(2, userName);
+                int removed = pstmt.executeUpdate();
+                userCache.invalidate(userName);
+                if (removed > 0) {
+                    publishUserChange(ChangeEvent.Type.UPDATE, userName);
+                    LOG.info("Role removed", "userName", userName, "role", roleToRemove);
                 }
             }
-        }
+        });
     }
 
     // Counts the number of users with the admin role
     public int countAdmins() throws SQLException {
-        String query = "SELECT COUNT(*) AS adminCount FROM cse360users WHERE role LIKE '%admin%'";
-        try (PreparedStatement pstmt = connection.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
+        return COUNT_ADMINS_STATS.time(() -> {
+            try (Connection conn = getConnection()) {
+                return countAdmins(conn);
+            }
+        });
+    }
+
+    private int countAdmins(Connection conn) throws SQLException {
+        PreparedStatement pstmt = prepare(conn, NamedQuery.COUNT_ADMINS);
+        try (ResultSet rs = pstmt.executeQuery()) {
             if (rs.next()) {
                 return rs.getInt("adminCount");
             }
@@ -389,18 +1314,142 @@ public class DatabaseHelper {
         return 0;
     }
 
-	// Closes the database connection and statement.
-	public void closeConnection() {
-		try{ 
-			if(statement!=null) statement.close(); 
-		} catch(SQLException se2) { 
-			se2.printStackTrace();
-		} 
-		try { 
-			if(connection!=null) connection.close(); 
-		} catch(SQLException se){ 
-			se.printStackTrace(); 
-		} 
+    // Batch operations for the admin page. Each runs as one JDBC batch inside one transaction.
+
+    /**
+     * Adds a role to every listed user; users that already have it are left as they are.
+     *
+     * @return The number of listed users that exist.
+     */
+    public int addRoleToUsers(List<String> userNames, String role) throws SQLException {
+        return ADD_ROLE_TO_USERS_STATS.time(() -> {
+            int added = runBatch(NamedQuery.ADD_ROLE, userNames, role, null);
+            for (String userName : userNames) {
+                userCache.invalidate(userName);
+            }
+            publishUserChanges(ChangeEvent.Type.UPDATE, userNames);
+            return added;
+        });
+    }
+
+    /**
+     * Removes a role from every listed user. Removing the admin role is rolled back if it
+     * would leave no admin at all.
+     *
+     * @return The number of users that had the role.
+     */
+    public int removeRoleFromUsers(List<String> userNames, String role) throws SQLException {
+        return REMOVE_ROLE_FROM_USERS_STATS.time(() -> {
+            int removed;
+            try {
+                removed = runBatch(NamedQuery.REMOVE_ROLE, userNames, role, conn -> {
+                    if (role.equals("admin") && countAdmins(conn) == 0) {
+                        throw new IllegalStateException("Cannot remove the admin role from every admin.");
+                    }
+                });
+            } finally {
+                for (String userName : userNames) {
+                    userCache.invalidate(userName);
+                }
+            }
+            publishUserChanges(ChangeEvent.Type.UPDATE, userNames);
+            return removed;
+        });
+    }
+
+    // Sets the same password for every listed user; returns the number of users updated
+    public int updateUserPasswords(List<String> userNames, String newPassword) throws SQLException {
+        return UPDATE_USER_PASSWORDS_STATS.time(() -> {
+            int updated = runBatch(NamedQuery.UPDATE_PASSWORD, userNames, newPassword, null);
+            for (String userName : userNames) {
+                loginThrottle.unlock(userName);
+            }
+            publishUserChanges(ChangeEvent.Type.UPDATE, userNames);
+            return updated;
+        });
+    }
+
+    /**
+     * Deletes every listed user that is not an admin.
+     *
+     * @return The userNames that were deleted; admins and unknown names are left out.
+     */
+    public List<String> deleteUsers(List<String> userNames) throws SQLException {
+        return DELETE_USERS_STATS.time(() -> {
+            List<String> deleted = new ArrayList<>();
+            try (Connection conn = getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    PreparedStatement pstmt = prepare(conn, NamedQuery.DELETE_NON_ADMIN_USER);
+                    for (String userName : userNames) {
+                        pstmt.setString(1, userName);
+                        pstmt.addBatch();
+                    }
+                    int[] counts = pstmt.executeBatch();
+                    conn.commit();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] > 0) {
+                            deleted.add(userNames.get(i));
+                        }
+                    }
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            for (String userName : deleted) {
+                removeFromUsernameFilter(userName);
+                userCache.put(userName, false, new ArrayList<>());
+            }
+            publishUserChanges(ChangeEvent.Type.DELETE, deleted);
+            return deleted;
+        });
+    }
+
+    // A check run inside a batch transaction before it commits; throwing rolls the batch back
+    @FunctionalInterface
+    private interface BatchCheck {
+        void verify(Connection conn) throws SQLException;
+    }
+
+    // Runs a (value, userName) statement once per user as one batch and transaction; returns the rows changed
+    private int runBatch(NamedQuery query, List<String> userNames, String value, BatchCheck check)
+            throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement pstmt = prepare(conn, query);
+                for (String userName : userNames) {
+                    pstmt.setString(1, value);
+                    pstmt.setString(2, userName);
+                    pstmt.addBatch();
+                }
+                int changed = 0;
+                for (int count : pstmt.executeBatch()) {
+                    changed += Math.max(count, 0);
+                }
+                if (check != null) {
+                    check.verify(conn);
+                }
+                conn.commit();
+                return changed;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+	// Closes the connection pool and every idle connection in it.
+	public synchronized void closeConnection() {
+		if (invitationPurger != null) {
+			invitationPurger.shutdownNow();
+			invitationPurger = null;
+		}
+		if (connectionPool != null) {
+			connectionPool.close();
+			connectionPool = null;
+		}
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,699 @@
+package application;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import databasePart1.ChangeEvent;
+import databasePart1.ChangeEventBus;
+import databasePart1.DatabaseHelper;
+import databasePart1.InvitationRedemption;
+import databasePart1.Log;
+import databasePart1.LoginThrottle;
+import databasePart1.Session;
+import databasePart1.SessionStore;
+import databasePart1.UserPage;
+import databasePart1.UserPrincipal;
+import databasePart1.UserQuery;
+
+/**
+ * The HeadlessServer class serves the application's operations as a local HTTP/JSON API,
+ * so many clients can share one process, one DatabaseHelper and one connection pool. It
+ * runs on the JDK's built-in HTTP server and handles every request on its own virtual
+ * thread, so a request waiting for a pooled connection does not hold a platform thread.
+ *
+ * Clients sign in with POST /api/authenticate and send the returned token as
+ * "Authorization: Bearer token". Admin endpoints require a session acting as admin.
+ * Sessions of a user end when the user is changed or deleted, so a removed role or reset
+ * password takes effect at once.
+ * Sign-in attempts go through the DatabaseHelper's LoginThrottle, keyed by userName and client
+ * address; a throttled attempt is answered 429 with a Retry-After header.
+ *
+ * Endpoints, all under /api:
+ * <pre>
+ * POST   /register                      {userName, password, name, email, code?, role?}
+ * POST   /authenticate                  {userName, password, role?}
+ * POST   /logout
+ * GET    /session
+ * POST   /session/role                  {role}
+ * POST   /invitations                   {roles, count?}            admin
+ * GET    /invitations/{code}
+ * POST   /invitations/{code}/redeem     {userName, password, name, email, role?}
+ * GET    /users?q=&amp;field=&amp;role=&amp;sort=&amp;desc=&amp;limit=&amp;cursor=   admin
+ * GET    /users/{userName}                                          admin
+ * DELETE /users/{userName}                                          admin
+ * POST   /users/{userName}/roles        {role}                      admin
+ * DELETE /users/{userName}/roles/{role}                             admin
+ * POST   /users/{userName}/password-reset                           admin
+ * GET    /health
+ * </pre>
+ *
+ * Run it with: java application.HeadlessServer [--port 8360] [--bind 127.0.0.1] [--db jdbc-url]
+ * StartCSE360 --headless does the same, but the java launcher starts the JavaFX toolkit for
+ * any Application main class, so that form needs a display.
+ */
+public class HeadlessServer implements AutoCloseable {
+
+	public static final int DEFAULT_PORT = 8360;
+	public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+
+	private static final int MAX_BODY_BYTES = 64 * 1024;
+	private static final int DEFAULT_PAGE_SIZE = 100;
+	private static final int MAX_PAGE_SIZE = 1000;
+	private static final int MAX_INVITATIONS_PER_REQUEST = 1000;
+	private static final int BACKLOG = 512;
+
+	private static final Log LOG = Log.get(HeadlessServer.class);
+
+	private final DatabaseHelper databaseHelper;
+	private final UserRolePrivileges userRolePrivileges;
+	private final SessionStore sessions;
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final ChangeEventBus.Subscription subscription;
+
+	// Only one request may register the first (admin) user
+	private final Object firstUserLock = new Object();
+
+	/**
+	 * An error that becomes an HTTP status and a JSON {"error": message} body.
+	 */
+	static final class ApiException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		ApiException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	// A response: the status and the value written as JSON
+	private static final class Reply {
+		final int status;
+		final Object body;
+
+		Reply(int status, Object body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	// One request as seen by the endpoint methods
+	private final class Request {
+		final HttpExchange exchange;
+		final String method;
+		final List<String> path;
+		private Map<String, Object> body;
+
+		Request(HttpExchange exchange, List<String> path) {
+			this.exchange = exchange;
+			this.method = exchange.getRequestMethod().toUpperCase(Locale.ROOT);
+			this.path = path;
+		}
+
+		Map<String, Object> body() throws IOException {
+			if (body == null) {
+				try (InputStream in = exchange.getRequestBody()) {
+					byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+					if (bytes.length > MAX_BODY_BYTES) {
+						throw new ApiException(413, "Request body is too large");
+					}
+					String text = new String(bytes, StandardCharsets.UTF_8);
+					body = text.isBlank() ? new HashMap<>() : Json.parseObject(text);
+				}
+			}
+			return body;
+		}
+
+		// A string property of the body; required ones must be present and not blank
+		String string(String name, boolean required) throws IOException {
+			Object value = body().get(name);
+			if (value == null || value.toString().isBlank()) {
+				if (required) {
+					throw new ApiException(400, "Missing " + name);
+				}
+				return null;
+			}
+			return value.toString();
+		}
+
+		Map<String, String> query() {
+			Map<String, String> params = new HashMap<>();
+			String raw = exchange.getRequestURI().getRawQuery();
+			if (raw == null) {
+				return params;
+			}
+			for (String pair : raw.split("&")) {
+				int equals = pair.indexOf('=');
+				String key = equals < 0 ? pair : pair.substring(0, equals);
+				String value = equals < 0 ? "" : pair.substring(equals + 1);
+				params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+			}
+			return params;
+		}
+
+		Session session() {
+			String header = exchange.getRequestHeaders().getFirst("Authorization");
+			if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+				throw new ApiException(401, "Sign in first");
+			}
+			Session session = sessions.get(header.substring(7).trim());
+			if (session == null) {
+				throw new ApiException(401, "The session has expired or is invalid");
+			}
+			return session;
+		}
+
+		Session admin() {
+			Session session = session();
+			if (!"admin".equals(session.getRole())) {
+				throw new ApiException(403, "This operation requires the admin role");
+			}
+			return session;
+		}
+	}
+
+	public HeadlessServer(DatabaseHelper databaseHelper, InetSocketAddress address) throws IOException {
+		this.databaseHelper = databaseHelper;
+		this.userRolePrivileges = new UserRolePrivileges(databaseHelper);
+		this.sessions = new SessionStore();
+		this.server = HttpServer.create(address, BACKLOG);
+		server.setExecutor(executor);
+		server.createContext("/api/", this::handle);
+		this.subscription = databaseHelper.getChangeEvents().subscribe(this::endSessionsOfChangedUsers);
+	}
+
+	public void start() {
+		server.start();
+		LOG.info("Headless server listening", "address", getAddress());
+	}
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	public SessionStore getSessions() {
+		return sessions;
+	}
+
+	// A changed user may have lost a role or had the password reset; make them sign in again.
+	// Runs on the publishing thread, so each event is one lookup in the userName index.
+	private void endSessionsOfChangedUsers(List<ChangeEvent> events) {
+		for (ChangeEvent event : events) {
+			if (event.isUser() && event.getType() != ChangeEvent.Type.INSERT) {
+				sessions.invalidateUser(event.getKey());
+			}
+		}
+	}
+
+	private void handle(HttpExchange exchange) {
+		Reply reply;
+		try {
+			List<String> path = pathSegments(exchange.getRequestURI().getRawPath());
+			reply = route(new Request(exchange, path));
+		} catch (ApiException e) {
+			reply = error(e.status, e.getMessage());
+		} catch (IllegalArgumentException e) {
+			reply = error(400, e.getMessage());
+		} catch (IllegalStateException e) {
+			reply = error(409, e.getMessage());
+		} catch (Exception e) {
+			LOG.error("Request failed", "path", exchange.getRequestURI().getPath(), e);
+			reply = error(500, "Internal server error");
+		}
+		try {
+			byte[] bytes = Json.write(reply.body).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(reply.status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		} catch (IOException e) {
+			LOG.debug("Client went away before the response was written", "path", exchange.getRequestURI().getPath());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	// "/api/users/alice/roles" becomes [users, alice, roles]
+	private static List<String> pathSegments(String rawPath) {
+		List<String> segments = new ArrayList<>();
+		for (String segment : rawPath.split("/")) {
+			if (!segment.isEmpty()) {
+				segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+			}
+		}
+		return segments.subList(1, segments.size()); // Drop "api"
+	}
+
+	private Reply route(Request request) throws Exception {
+		List<String> path = request.path;
+		String resource = path.isEmpty() ? "" : path.get(0);
+		switch (resource) {
+			case "register":
+				requireMethod(request, "POST", path.size() == 1);
+				return register(request, request.string("code", false));
+			case "authenticate":
+				requireMethod(request, "POST", path.size() == 1);
+				return authenticate(request);
+			case "logout":
+				requireMethod(request, "POST", path.size() == 1);
+				sessions.invalidate(request.session().getToken());
+				return ok(Collections.singletonMap("signedOut", true));
+			case "session":
+				if (path.size() == 1) {
+					requireMethod(request, "GET", true);
+					return ok(sessionJson(request.session(), false));
+				}
+				requireMethod(request, "POST", path.size() == 2 && path.get(1).equals("role"));
+				return selectRole(request);
+			case "invitations":
+				if (path.size() == 1) {
+					requireMethod(request, "POST", true);
+					return generateInvitations(request);
+				}
+				if (path.size() == 2) {
+					requireMethod(request, "GET", true);
+					return invitation(path.get(1));
+				}
+				requireMethod(request, "POST", path.size() == 3 && path.get(2).equals("redeem"));
+				return register(request, path.get(1));
+			case "users":
+				return routeUsers(request);
+			case "health":
+				requireMethod(request, "GET", path.size() == 1);
+				Map<String, Object> health = new LinkedHashMap<>();
+				health.put("status", "ok");
+				health.put("sessions", sessions.size());
+				health.put("loginThrottle", throttleJson(databaseHelper.getLoginThrottle()));
+				return ok(health);
+			default:
+				throw new ApiException(404, "No such endpoint");
+		}
+	}
+
+	private Reply routeUsers(Request request) throws Exception {
+		List<String> path = request.path;
+		Session admin = request.admin();
+		if (path.size() == 1) {
+			requireMethod(request, "GET", true);
+			return listUsers(request);
+		}
+		String userName = path.get(1);
+		if (path.size() == 2) {
+			if (request.method.equals("GET")) {
+				return ok(userJson(findUser(userName)));
+			}
+			requireMethod(request, "DELETE", true);
+			return deleteUser(admin, userName);
+		}
+		switch (path.get(2)) {
+			case "roles":
+				if (path.size() == 3) {
+					requireMethod(request, "POST", true);
+					String role = knownRole(request.string("role", true));
+					findUser(userName);
+					userRolePrivileges.addRoleToUsers(List.of(userName), role);
+					return ok(userJson(findUser(userName)));
+				}
+				requireMethod(request, "DELETE", path.size() == 4);
+				String role = knownRole(path.get(3));
+				findUser(userName);
+				// Throws IllegalStateException, a 409, when it would remove the last admin
+				userRolePrivileges.removeRoleFromUsers(List.of(userName), role);
+				return ok(userJson(findUser(userName)));
+			case "password-reset":
+				requireMethod(request, "POST", path.size() == 3);
+				if (!userRolePrivileges.resetPassword(userName)) {
+					throw new ApiException(404, "No such user");
+				}
+				return ok(Collections.singletonMap("userName", userName));
+			default:
+				throw new ApiException(404, "No such endpoint");
+		}
+	}
+
+	private static void requireMethod(Request request, String method, boolean pathMatches) {
+		if (!pathMatches) {
+			throw new ApiException(404, "No such endpoint");
+		}
+		if (!request.method.equals(method)) {
+			throw new ApiException(405, "Use " + method);
+		}
+	}
+
+	// Registers the first user as admin, or any later user with an invitation code
+	private Reply register(Request request, String code) throws IOException, SQLException {
+		String userName = request.string("userName", true);
+		String password = request.string("password", true);
+		String name = request.string("name", false);
+		String email = request.string("email", false);
+		String role = request.string("role", false);
+
+		String userNameError = UserNameRecognizer.checkForValidUserName(userName);
+		if (!userNameError.isEmpty()) {
+			throw new ApiException(400, userNameError.trim());
+		}
+		PasswordEvaluator.Result passwordResult = PasswordEvaluator.evaluate(password);
+		if (!passwordResult.isValid()) {
+			throw new ApiException(400, "Password: " + passwordResult.getErrorMessage());
+		}
+
+		if (code == null) {
+			synchronized (firstUserLock) {
+				if (!databaseHelper.isDatabaseEmpty()) {
+					throw new ApiException(400, "An invitation code is required");
+				}
+				databaseHelper.register(new User(userName, password, "admin", name, email));
+			}
+			return new Reply(201, registered(userName, List.of("admin")));
+		}
+
+		InvitationRedemption redemption = databaseHelper.redeemInvitationCode(code,
+				new User(userName, password, role == null ? "" : role, name, email));
+		switch (redemption.getStatus()) {
+			case REDEEMED:
+				return new Reply(201, registered(userName, redemption.getRoles()));
+			case INVALID_CODE:
+				throw new ApiException(404, "Invalid invitation code");
+			case ALREADY_USED:
+				throw new ApiException(409, "The invitation code has already been used");
+			case EXPIRED:
+				throw new ApiException(410, "The invitation code has expired");
+			case USERNAME_TAKEN:
+				throw new ApiException(409, "The userName is already taken");
+			case ROLE_NOT_GRANTED:
+				throw new ApiException(403, "The invitation code does not grant that role");
+			default:
+				throw new IllegalStateException("Unknown redemption status " + redemption.getStatus());
+		}
+	}
+
+	private static Map<String, Object> registered(String userName, List<String> roles) {
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("userName", userName);
+		json.put("roles", roles);
+		return json;
+	}
+
+	private Reply authenticate(Request request) throws IOException, SQLException {
+		String userName = request.string("userName", true);
+		String password = request.string("password", true);
+		String role = request.string("role", false);
+
+		// Too many recent attempts are turned away before the database is asked
+		LoginThrottle throttle = databaseHelper.getLoginThrottle();
+		String source = request.exchange.getRemoteAddress().getAddress().getHostAddress();
+		LoginThrottle.Decision decision = throttle.tryAcquire(userName, source);
+		if (!decision.isAllowed()) {
+			request.exchange.getResponseHeaders().set("Retry-After", String.valueOf(decision.getRetryAfterSeconds()));
+			throw new ApiException(429, decision.getOutcome() == LoginThrottle.Outcome.LOCKED_OUT
+					? "Too many failed attempts; the account is locked"
+					: "Too many login attempts");
+		}
+
+		UserPrincipal principal = databaseHelper.authenticate(userName, password);
+		if (principal == null) {
+			throttle.recordFailure(userName);
+			throw new ApiException(401, "Invalid username or password");
+		}
+		throttle.recordSuccess(userName);
+		if (principal.getRoles().isEmpty()) {
+			throw new ApiException(403, "User account has no roles assigned");
+		}
+		if (role == null && principal.getRoles().size() == 1) {
+			role = principal.getRoles().get(0);
+		} else if (role != null && !principal.hasRole(role)) {
+			throw new ApiException(403, "The user does not have role " + role);
+		}
+		Session session = sessions.create(principal, role);
+		LOG.info("User signed in", "userName", userName, "role", role);
+		return ok(sessionJson(session, true));
+	}
+
+	private static Map<String, Object> throttleJson(LoginThrottle throttle) {
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("allowed", throttle.getAllowedCount());
+		json.put("userThrottled", throttle.getUserThrottledCount());
+		json.put("sourceThrottled", throttle.getSourceThrottledCount());
+		json.put("lockouts", throttle.getLockoutCount());
+		json.put("lockedOutAttempts", throttle.getLockedOutAttemptCount());
+		return json;
+	}
+
+	private Reply selectRole(Request request) throws IOException {
+		Session session = request.session();
+		String role = request.string("role", true);
+		if (!session.getPrincipal().hasRole(role)) {
+			throw new ApiException(403, "The user does not have role " + role);
+		}
+		sessions.selectRole(session.getToken(), role);
+		return ok(sessionJson(session, false));
+	}
+
+	private Map<String, Object> sessionJson(Session session, boolean includeToken) {
+		UserPrincipal principal = session.getPrincipal();
+		Map<String, Object> json = new LinkedHashMap<>();
+		if (includeToken) {
+			json.put("token", session.getToken());
+			json.put("idleTimeoutSeconds", sessions.getIdleTtl().getSeconds());
+		}
+		json.put("userName", principal.getUserName());
+		json.put("name", principal.getName());
+		json.put("email", principal.getEmail());
+		json.put("roles", principal.getRoles());
+		json.put("role", session.getRole());
+		return json;
+	}
+
+	private Reply generateInvitations(Request request) throws IOException, SQLException {
+		request.admin();
+		Object rolesValue = request.body().get("roles");
+		List<String> roles = new ArrayList<>();
+		if (rolesValue instanceof List) {
+			for (Object role : (List<?>) rolesValue) {
+				roles.add(String.valueOf(role));
+			}
+		} else if (rolesValue != null) {
+			roles.addAll(DatabaseHelper.parseRoles(rolesValue.toString()));
+		}
+		if (roles.isEmpty()) {
+			throw new ApiException(400, "Missing roles");
+		}
+		for (String role : roles) {
+			knownRole(role);
+		}
+		String roleList = String.join(",", roles);
+
+		Object countValue = request.body().get("count");
+		long count = countValue instanceof Number ? ((Number) countValue).longValue() : 1;
+		if (count < 1 || count > MAX_INVITATIONS_PER_REQUEST) {
+			throw new ApiException(400, "count must be between 1 and " + MAX_INVITATIONS_PER_REQUEST);
+		}
+
+		List<String> codes;
+		if (count == 1) {
+			String code = databaseHelper.generateInvitationCode(roleList);
+			if (code == null) {
+				throw new SQLException("The invitation code could not be stored");
+			}
+			codes = List.of(code);
+		} else {
+			StringWriter out = new StringWriter();
+			databaseHelper.generateInvitationCodes(roleList, (int) count, out);
+			codes = Arrays.asList(out.toString().split("\\R"));
+		}
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("roles", roles);
+		json.put("codes", codes);
+		return new Reply(201, json);
+	}
+
+	private Reply invitation(String code) throws SQLException {
+		List<String> roles = databaseHelper.getInvitationRoles(code);
+		if (roles == null) {
+			throw new ApiException(404, "Invalid, used or expired invitation code");
+		}
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("code", code);
+		json.put("roles", roles);
+		return ok(json);
+	}
+
+	// One keyset page of users; pass the returned cursor to get the next page
+	private Reply listUsers(Request request) throws SQLException {
+		Map<String, String> params = request.query();
+		UserQuery query = UserQuery.all();
+		if (params.containsKey("q")) {
+			query = query.searching(field(params.getOrDefault("field", "username")), params.get("q"));
+		}
+		query = query.withRole(params.get("role"));
+		String sort = params.getOrDefault("sort", "id");
+		query = query.sortedBy(sort.equalsIgnoreCase("id") ? null : field(sort),
+				Boolean.parseBoolean(params.get("desc")));
+
+		int limit = DEFAULT_PAGE_SIZE;
+		if (params.containsKey("limit")) {
+			limit = Integer.parseInt(params.get("limit"));
+			if (limit < 1 || limit > MAX_PAGE_SIZE) {
+				throw new ApiException(400, "limit must be between 1 and " + MAX_PAGE_SIZE);
+			}
+		}
+
+		UserPage previous = params.containsKey("cursor") ? decodeCursor(params.get("cursor")) : null;
+		UserPage page = databaseHelper.searchUsers(query, previous, limit);
+		List<Object> users = new ArrayList<>(page.getUsers().size());
+		for (User user : page.getUsers()) {
+			users.add(userJson(user));
+		}
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("users", users);
+		json.put("cursor", page.hasMore() ? encodeCursor(page) : null);
+		return ok(json);
+	}
+
+	private static UserQuery.Field field(String name) {
+		try {
+			return UserQuery.Field.valueOf(name.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new ApiException(400, "Unknown field " + name + "; use username, name or email");
+		}
+	}
+
+	// The cursor is the last row's id and sort key, so it only makes sense with the same query
+	private static String encodeCursor(UserPage page) {
+		String key = page.getLastSortKey() == null ? "" : page.getLastSortKey();
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((page.getLastId() + ":" + key).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static UserPage decodeCursor(String cursor) {
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			int colon = decoded.indexOf(':');
+			int lastId = Integer.parseInt(decoded.substring(0, colon));
+			String key = decoded.substring(colon + 1);
+			return new UserPage(Collections.emptyList(), lastId, key, true);
+		} catch (RuntimeException e) {
+			throw new ApiException(400, "Invalid cursor");
+		}
+	}
+
+	private User findUser(String userName) throws SQLException {
+		List<User> users = databaseHelper.getUsers(List.of(userName));
+		if (users.isEmpty()) {
+			throw new ApiException(404, "No such user");
+		}
+		return users.get(0);
+	}
+
+	private Reply deleteUser(Session admin, String userName) throws SQLException {
+		if (userName.equals(admin.getUserName())) {
+			throw new ApiException(409, "You cannot delete your own account");
+		}
+		User user = findUser(userName);
+		if (DatabaseHelper.parseRoles(user.getRole()).contains("admin")) {
+			throw new ApiException(409, "Cannot delete an admin user");
+		}
+		if (userRolePrivileges.deleteUsers(List.of(userName)).isEmpty()) {
+			throw new ApiException(404, "No such user");
+		}
+		return ok(Collections.singletonMap("deleted", userName));
+	}
+
+	private static String knownRole(String role) {
+		if (!UserRolePrivileges.ROLES.contains(role)) {
+			throw new ApiException(400, "Unknown role " + role + "; use one of " + String.join(", ", UserRolePrivileges.ROLES));
+		}
+		return role;
+	}
+
+	// The password is never part of a response
+	private static Map<String, Object> userJson(User user) {
+		Map<String, Object> json = new LinkedHashMap<>();
+		json.put("userName", user.getUserName());
+		json.put("name", user.getName());
+		json.put("email", user.getEmail());
+		json.put("roles", DatabaseHelper.parseRoles(user.getRole()));
+		return json;
+	}
+
+	private static Reply ok(Object body) {
+		return new Reply(200, body);
+	}
+
+	private static Reply error(int status, String message) {
+		return new Reply(status, Collections.singletonMap("error", message));
+	}
+
+	// Stops accepting requests, waits up to a second for the ones in flight, and ends every session
+	@Override
+	public void close() {
+		server.stop(1);
+		executor.shutdown();
+		subscription.close();
+		sessions.close();
+		LOG.info("Headless server stopped");
+	}
+
+	/**
+	 * Starts the server on its own database connection and runs until the process is stopped.
+	 *
+	 * @param args --port n, --bind address and --db jdbc-url, all optional; --headless is ignored.
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = DEFAULT_PORT;
+		String bind = DEFAULT_BIND_ADDRESS;
+		String dbUrl = null;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--headless":
+					break;
+				case "--port":
+					port = Integer.parseInt(args[++i]);
+					break;
+				case "--bind":
+					bind = args[++i];
+					break;
+				case "--db":
+					dbUrl = args[++i];
+					break;
+				default:
+					System.err.println("Unknown option: " + args[i]);
+					System.err.println("Usage: java application.HeadlessServer [--port n] [--bind address] "
+							+ "[--db jdbc-url]");
+					System.exit(2);
+			}
+		}
+
+		DatabaseHelper databaseHelper = dbUrl == null ? new DatabaseHelper() : new DatabaseHelper(dbUrl);
+		databaseHelper.connectToDatabase();
+		HeadlessServer server = new HeadlessServer(databaseHelper, new InetSocketAddress(bind, port));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.close();
+			databaseHelper.closeConnection();
+		}, "headless-shutdown"));
+		server.start();
+		System.out.println("Listening on http://" + bind + ":" + server.getAddress().getPort() + "/api/");
+	}
+}
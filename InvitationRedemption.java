@@ -0,0 +1,40 @@
+package databasePart1;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The InvitationRedemption class is the outcome of redeeming an invitation code.
+ * A code is either redeemed together with the new account, or nothing is changed and the
+ * status says why.
+ */
+public class InvitationRedemption {
+
+	public enum Status {
+		REDEEMED,          // The code was claimed and the user was registered
+		ALREADY_USED,      // The code exists but was redeemed before
+		INVALID_CODE,      // No such code, or it was purged
+		EXPIRED,           // The code exists but its time to live has passed
+		USERNAME_TAKEN,    // The code is still unused because the userName already exists
+		ROLE_NOT_GRANTED   // The code is still unused because it does not grant the requested role
+	}
+
+	private final Status status;
+	private final List<String> roles;
+
+	InvitationRedemption(Status status, List<String> roles) {
+		this.status = status;
+		this.roles = Collections.unmodifiableList(roles);
+	}
+
+	static InvitationRedemption failed(Status status) {
+		return new InvitationRedemption(status, Collections.emptyList());
+	}
+
+	public Status getStatus() { return status; }
+
+	public boolean isRedeemed() { return status == Status.REDEEMED; }
+
+	// The roles the user was registered with; empty unless the code was redeemed
+	public List<String> getRoles() { return roles; }
+}
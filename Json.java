@@ -0,0 +1,278 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Json class reads and writes the small JSON documents used by the headless server
+ * and the user export. Objects become LinkedHashMaps, arrays become Lists, numbers become
+ * Longs or Doubles; writing accepts the same types plus any other value as its string form.
+ */
+final class Json {
+
+	private Json() {}
+
+	/**
+	 * Parses a JSON object.
+	 *
+	 * @throws IllegalArgumentException If the text is not a single JSON object.
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> parseObject(String text) {
+		Parser parser = new Parser(text);
+		Object value = parser.readValue();
+		parser.skipWhitespace();
+		if (parser.position != text.length()) {
+			throw parser.error("Unexpected trailing characters");
+		}
+		if (!(value instanceof Map)) {
+			throw new IllegalArgumentException("Expected a JSON object");
+		}
+		return (Map<String, Object>) value;
+	}
+
+	static String write(Object value) {
+		StringBuilder out = new StringBuilder();
+		appendValue(out, value);
+		return out.toString();
+	}
+
+	static void appendValue(StringBuilder out, Object value) {
+		if (value == null) {
+			out.append("null");
+		} else if (value instanceof String) {
+			appendString(out, (String) value);
+		} else if (value instanceof Number || value instanceof Boolean) {
+			out.append(value);
+		} else if (value instanceof Map) {
+			out.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!first) {
+					out.append(',');
+				}
+				first = false;
+				appendString(out, String.valueOf(entry.getKey()));
+				out.append(':');
+				appendValue(out, entry.getValue());
+			}
+			out.append('}');
+		} else if (value instanceof Iterable) {
+			out.append('[');
+			boolean first = true;
+			for (Object element : (Iterable<?>) value) {
+				if (!first) {
+					out.append(',');
+				}
+				first = false;
+				appendValue(out, element);
+			}
+			out.append(']');
+		} else {
+			appendString(out, value.toString());
+		}
+	}
+
+	// Appends a quoted, escaped string, or null
+	static void appendString(StringBuilder out, String value) {
+		if (value == null) {
+			out.append("null");
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						out.append(String.format("\\u%04x", (int) c));
+					} else {
+						out.append(c);
+					}
+			}
+		}
+		out.append('"');
+	}
+
+	// A recursive-descent parser over the whole document
+	private static final class Parser {
+		private final String text;
+		private int position;
+
+		Parser(String text) {
+			this.text = text;
+		}
+
+		Object readValue() {
+			skipWhitespace();
+			if (position >= text.length()) {
+				throw error("Unexpected end of input");
+			}
+			char c = text.charAt(position);
+			switch (c) {
+				case '{': return readObject();
+				case '[': return readArray();
+				case '"': return readString();
+				case 't': return readLiteral("true", Boolean.TRUE);
+				case 'f': return readLiteral("false", Boolean.FALSE);
+				case 'n': return readLiteral("null", null);
+				default:
+					if (c == '-' || (c >= '0' && c <= '9')) {
+						return readNumber();
+					}
+					throw error("Unexpected character '" + c + "'");
+			}
+		}
+
+		private Map<String, Object> readObject() {
+			Map<String, Object> object = new LinkedHashMap<>();
+			position++; // {
+			skipWhitespace();
+			if (peek() == '}') {
+				position++;
+				return object;
+			}
+			while (true) {
+				skipWhitespace();
+				if (peek() != '"') {
+					throw error("Expected a property name");
+				}
+				String key = readString();
+				skipWhitespace();
+				expect(':');
+				object.put(key, readValue());
+				skipWhitespace();
+				if (peek() == ',') {
+					position++;
+				} else {
+					expect('}');
+					return object;
+				}
+			}
+		}
+
+		private List<Object> readArray() {
+			List<Object> array = new ArrayList<>();
+			position++; // [
+			skipWhitespace();
+			if (peek() == ']') {
+				position++;
+				return array;
+			}
+			while (true) {
+				array.add(readValue());
+				skipWhitespace();
+				if (peek() == ',') {
+					position++;
+				} else {
+					expect(']');
+					return array;
+				}
+			}
+		}
+
+		private String readString() {
+			position++; // opening quote
+			StringBuilder value = new StringBuilder();
+			while (true) {
+				if (position >= text.length()) {
+					throw error("Unterminated string");
+				}
+				char c = text.charAt(position++);
+				if (c == '"') {
+					return value.toString();
+				}
+				if (c != '\\') {
+					value.append(c);
+					continue;
+				}
+				if (position >= text.length()) {
+					throw error("Unterminated escape");
+				}
+				char escaped = text.charAt(position++);
+				switch (escaped) {
+					case '"': value.append('"'); break;
+					case '\\': value.append('\\'); break;
+					case '/': value.append('/'); break;
+					case 'b': value.append('\b'); break;
+					case 'f': value.append('\f'); break;
+					case 'n': value.append('\n'); break;
+					case 'r': value.append('\r'); break;
+					case 't': value.append('\t'); break;
+					case 'u':
+						if (position + 4 > text.length()) {
+							throw error("Truncated unicode escape");
+						}
+						try {
+							value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+						} catch (NumberFormatException e) {
+							throw error("Invalid unicode escape");
+						}
+						position += 4;
+						break;
+					default:
+						throw error("Invalid escape '\\" + escaped + "'");
+				}
+			}
+		}
+
+		private Object readNumber() {
+			int start = position;
+			boolean decimal = false;
+			while (position < text.length()) {
+				char c = text.charAt(position);
+				if (c == '.' || c == 'e' || c == 'E') {
+					decimal = true;
+				} else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+					break;
+				}
+				position++;
+			}
+			String number = text.substring(start, position);
+			try {
+				return decimal ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+			} catch (NumberFormatException e) {
+				throw error("Invalid number " + number);
+			}
+		}
+
+		private Object readLiteral(String literal, Object value) {
+			if (!text.startsWith(literal, position)) {
+				throw error("Unexpected token");
+			}
+			position += literal.length();
+			return value;
+		}
+
+		void skipWhitespace() {
+			while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+
+		private char peek() {
+			if (position >= text.length()) {
+				throw error("Unexpected end of input");
+			}
+			return text.charAt(position);
+		}
+
+		private void expect(char c) {
+			if (peek() != c) {
+				throw error("Expected '" + c + "'");
+			}
+			position++;
+		}
+
+		IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + position);
+		}
+	}
+}
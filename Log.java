@@ -0,0 +1,172 @@
+package databasePart1;
+
+import java.util.Locale;
+
+/**
+ * The Log class is the application's logging facade. Each message has a level, the name of
+ * the class that logged it and optional key=value fields, e.g.
+ * <pre>
+ * private static final Log LOG = Log.get(DatabaseHelper.class);
+ * LOG.info("User registered", "userName", userName);
+ * </pre>
+ * A disabled level costs one comparison: the fixed-arity methods allocate nothing before
+ * the level check, and records are formatted and written by {@link LogAppender} on its own
+ * thread, never on the caller's.
+ *
+ * The level is read from the system property cse360.log.level (default INFO) and can be
+ * changed at runtime with {@link #setLevel}.
+ */
+public final class Log {
+
+	public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+	private static final Object[] NO_FIELDS = new Object[0];
+
+	private static volatile int threshold = parseLevel(System.getProperty("cse360.log.level"), Level.INFO).ordinal();
+
+	private final String name;
+
+	private Log(String name) {
+		this.name = name;
+	}
+
+	public static Log get(Class<?> owner) {
+		return new Log(owner.getSimpleName());
+	}
+
+	public static void setLevel(Level level) {
+		threshold = level.ordinal();
+	}
+
+	public static Level getLevel() {
+		return Level.values()[threshold];
+	}
+
+	static Level parseLevel(String value, Level fallback) {
+		if (value == null || value.isBlank()) {
+			return fallback;
+		}
+		try {
+			return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return fallback;
+		}
+	}
+
+	public boolean isEnabled(Level level) {
+		return level.ordinal() >= threshold;
+	}
+
+	public boolean isDebugEnabled() {
+		return Level.DEBUG.ordinal() >= threshold;
+	}
+
+	public boolean isInfoEnabled() {
+		return Level.INFO.ordinal() >= threshold;
+	}
+
+	// DEBUG
+	public void debug(String message) {
+		if (Level.DEBUG.ordinal() >= threshold) {
+			append(Level.DEBUG, message, NO_FIELDS, null);
+		}
+	}
+
+	public void debug(String message, String key, Object value) {
+		if (Level.DEBUG.ordinal() >= threshold) {
+			append(Level.DEBUG, message, new Object[] { key, value }, null);
+		}
+	}
+
+	public void debug(String message, String key1, Object value1, String key2, Object value2) {
+		if (Level.DEBUG.ordinal() >= threshold) {
+			append(Level.DEBUG, message, new Object[] { key1, value1, key2, value2 }, null);
+		}
+	}
+
+	// INFO
+	public void info(String message) {
+		if (Level.INFO.ordinal() >= threshold) {
+			append(Level.INFO, message, NO_FIELDS, null);
+		}
+	}
+
+	public void info(String message, String key, Object value) {
+		if (Level.INFO.ordinal() >= threshold) {
+			append(Level.INFO, message, new Object[] { key, value }, null);
+		}
+	}
+
+	public void info(String message, String key1, Object value1, String key2, Object value2) {
+		if (Level.INFO.ordinal() >= threshold) {
+			append(Level.INFO, message, new Object[] { key1, value1, key2, value2 }, null);
+		}
+	}
+
+	// WARN
+	public void warn(String message) {
+		if (Level.WARN.ordinal() >= threshold) {
+			append(Level.WARN, message, NO_FIELDS, null);
+		}
+	}
+
+	public void warn(String message, String key, Object value) {
+		if (Level.WARN.ordinal() >= threshold) {
+			append(Level.WARN, message, new Object[] { key, value }, null);
+		}
+	}
+
+	public void warn(String message, Throwable error) {
+		if (Level.WARN.ordinal() >= threshold) {
+			append(Level.WARN, message, NO_FIELDS, error);
+		}
+	}
+
+	// ERROR
+	public void error(String message) {
+		if (Level.ERROR.ordinal() >= threshold) {
+			append(Level.ERROR, message, NO_FIELDS, null);
+		}
+	}
+
+	public void error(String message, Throwable error) {
+		if (Level.ERROR.ordinal() >= threshold) {
+			append(Level.ERROR, message, NO_FIELDS, error);
+		}
+	}
+
+	public void error(String message, String key, Object value, Throwable error) {
+		if (Level.ERROR.ordinal() >= threshold) {
+			append(Level.ERROR, message, new Object[] { key, value }, error);
+		}
+	}
+
+	private void append(Level level, String message, Object[] fields, Throwable error) {
+		LogAppender.getInstance().append(new Record(System.currentTimeMillis(), level, name,
+				Thread.currentThread().getName(), message, fields, error));
+	}
+
+	/**
+	 * One log message as captured on the calling thread. Formatting is left to the appender.
+	 */
+	static final class Record {
+		final long timestampMillis;
+		final Level level;
+		final String logger;
+		final String thread;
+		final String message;
+		final Object[] fields; // key, value, key, value, ...
+		final Throwable error;
+
+		Record(long timestampMillis, Level level, String logger, String thread, String message, Object[] fields,
+				Throwable error) {
+			this.timestampMillis = timestampMillis;
+			this.level = level;
+			this.logger = logger;
+			this.thread = thread;
+			this.message = message;
+			this.fields = fields;
+			this.error = error;
+		}
+	}
+}
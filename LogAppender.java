@@ -0,0 +1,281 @@
+package databasePart1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The LogAppender class writes {@link Log} records to a rolling file on a background thread.
+ * Logging threads only claim a slot in a fixed ring buffer and store the record; they never
+ * format, lock or touch the file. If the buffer is full the record is dropped and counted
+ * rather than making the caller wait, and the writer notes the drop count in the file.
+ *
+ * The file is cse360.log under ~/cse360-logs unless the system property cse360.log.file
+ * names another. It rolls over at 10 MB, keeping five old files. WARN and ERROR records are
+ * also copied to standard error.
+ */
+public final class LogAppender {
+
+	static final int RING_SIZE = 8192; // Must be a power of two
+	static final long MAX_FILE_BYTES = 10L * 1024 * 1024;
+	static final int MAX_ROLLED_FILES = 5;
+
+	// How long the writer sleeps when the ring is empty, unless woken by a WARN or ERROR
+	private static final long IDLE_PARK_NANOS = 10_000_000L;
+	private static final int WAKE_INTERVAL = RING_SIZE / 4;
+
+	private static final DateTimeFormatter TIMESTAMP =
+			DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+	private static final class Holder {
+		static final LogAppender INSTANCE = new LogAppender(defaultFile());
+	}
+
+	// Bounded multi-producer ring: a slot may be written when its sequence equals the claiming
+	// position and read when it equals position + 1
+	private final Log.Record[] slots = new Log.Record[RING_SIZE];
+	private final AtomicLongArray sequences = new AtomicLongArray(RING_SIZE);
+	private final AtomicLong tail = new AtomicLong();
+	private long head; // Only touched by the writer thread
+
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder written = new LongAdder();
+	private volatile boolean closing;
+
+	private final Path file;
+	private final Thread writerThread;
+	private Writer out;
+	private long fileBytes;
+	private long lastTimestampMillis = Long.MIN_VALUE;
+	private String lastTimestamp;
+
+	private LogAppender(Path file) {
+		this.file = file;
+		for (int i = 0; i < RING_SIZE; i++) {
+			sequences.set(i, i);
+		}
+		writerThread = new Thread(this::runWriter, "log-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::close, "log-shutdown"));
+	}
+
+	public static LogAppender getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	private static Path defaultFile() {
+		String configured = System.getProperty("cse360.log.file");
+		if (configured != null && !configured.isBlank()) {
+			return Paths.get(configured);
+		}
+		return Paths.get(System.getProperty("user.home"), "cse360-logs", "cse360.log");
+	}
+
+	// Queues a record for the writer thread; returns false if the ring was full and it was dropped
+	boolean append(Log.Record record) {
+		long position = tail.get();
+		while (true) {
+			int index = (int) (position & (RING_SIZE - 1));
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					slots[index] = record;
+					sequences.set(index, position + 1);
+					break;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				dropped.increment();
+				return false;
+			} else {
+				position = tail.get();
+			}
+		}
+		// Wake the writer for problems right away, and every quarter ring so a burst does not fill it
+		if (record.level.ordinal() >= Log.Level.WARN.ordinal() || (position & (WAKE_INTERVAL - 1)) == 0) {
+			LockSupport.unpark(writerThread);
+		}
+		return true;
+	}
+
+	// Takes the next record off the ring, or returns null if it is empty
+	private Log.Record poll() {
+		int index = (int) (head & (RING_SIZE - 1));
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		Log.Record record = slots[index];
+		slots[index] = null;
+		sequences.set(index, head + RING_SIZE);
+		head++;
+		return record;
+	}
+
+	private void runWriter() {
+		StringBuilder line = new StringBuilder(256);
+		long droppedReported = 0;
+		while (true) {
+			Log.Record record = poll();
+			if (record == null) {
+				long droppedNow = dropped.sum();
+				if (droppedNow != droppedReported) {
+					line.setLength(0);
+					line.append(TIMESTAMP.format(Instant.now())).append(" WARN  [log-writer] LogAppender - ")
+							.append("Log records dropped because the ring buffer was full count=")
+							.append(droppedNow - droppedReported).append(System.lineSeparator());
+					write(line, false);
+					droppedReported = droppedNow;
+				}
+				flushQuietly();
+				if (closing) {
+					return;
+				}
+				LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				continue;
+			}
+			line.setLength(0);
+			format(record, line);
+			write(line, record.level.ordinal() >= Log.Level.WARN.ordinal());
+			written.increment();
+		}
+	}
+
+	private void format(Log.Record record, StringBuilder line) {
+		// Records come in bursts from the same millisecond, so the formatted time is reused
+		if (record.timestampMillis != lastTimestampMillis) {
+			lastTimestampMillis = record.timestampMillis;
+			lastTimestamp = TIMESTAMP.format(Instant.ofEpochMilli(record.timestampMillis));
+		}
+		line.append(lastTimestamp).append(' ');
+		String level = record.level.name();
+		line.append(level);
+		for (int i = level.length(); i < 6; i++) {
+			line.append(' ');
+		}
+		line.append('[').append(record.thread).append("] ").append(record.logger).append(" - ").append(record.message);
+		for (int i = 0; i + 1 < record.fields.length; i += 2) {
+			line.append(' ').append(record.fields[i]).append('=');
+			appendValue(line, record.fields[i + 1]);
+		}
+		line.append(System.lineSeparator());
+		if (record.error != null) {
+			StringWriter trace = new StringWriter();
+			record.error.printStackTrace(new PrintWriter(trace));
+			line.append(trace);
+		}
+	}
+
+	// Quotes values that would otherwise be ambiguous in a key=value line
+	private static void appendValue(StringBuilder line, Object value) {
+		String text = String.valueOf(value);
+		if (!text.isEmpty() && text.indexOf(' ') < 0 && text.indexOf('"') < 0 && text.indexOf('=') < 0
+				&& text.indexOf('\n') < 0) {
+			line.append(text);
+			return;
+		}
+		line.append('"').append(text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+	}
+
+	private void write(CharSequence line, boolean copyToConsole) {
+		if (copyToConsole) {
+			System.err.print(line);
+		}
+		try {
+			if (out == null) {
+				open();
+			}
+			out.append(line);
+			fileBytes += line.length();
+			if (fileBytes >= MAX_FILE_BYTES) {
+				roll();
+			}
+		} catch (IOException e) {
+			// Keep the application running; the record still reaches the console
+			if (!copyToConsole) {
+				System.err.print(line);
+			}
+			closeQuietly();
+		}
+	}
+
+	private void open() throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND), 64 * 1024);
+		fileBytes = Files.size(file);
+	}
+
+	// cse360.log becomes cse360.log.1, .1 becomes .2 and so on; the oldest is deleted
+	private void roll() throws IOException {
+		closeQuietly();
+		Files.deleteIfExists(rolled(MAX_ROLLED_FILES));
+		for (int i = MAX_ROLLED_FILES - 1; i >= 1; i--) {
+			Path from = rolled(i);
+			if (Files.exists(from)) {
+				Files.move(from, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+		open();
+	}
+
+	private Path rolled(int generation) {
+		return file.resolveSibling(file.getFileName() + "." + generation);
+	}
+
+	private void flushQuietly() {
+		if (out != null) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				closeQuietly();
+			}
+		}
+	}
+
+	private void closeQuietly() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException ignored) {
+				// Nothing more can be done with a broken log file
+			}
+			out = null;
+		}
+	}
+
+	// Writes everything still in the ring and stops the writer; runs at JVM shutdown
+	private void close() {
+		closing = true;
+		LockSupport.unpark(writerThread);
+		try {
+			writerThread.join(2000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		closeQuietly();
+	}
+
+	public Path getFile() { return file; }
+	public long getWrittenCount() { return written.sum(); }
+	public long getDroppedCount() { return dropped.sum(); }
+}
@@ -0,0 +1,305 @@
+package databasePart1;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LoginThrottle class limits how fast sign-in attempts may be made, so a brute-force or
+ * credential-stuffing burst is turned away in memory instead of reaching the database. Every
+ * attempt takes a token from the bucket of the userName and from the bucket of the source it
+ * came from (a client address, or "desktop" for the local window); an attempt is rejected when
+ * either bucket is empty. Buckets refill continuously at a fixed rate up to their capacity.
+ *
+ * A userName that fails too many times in a row is locked out for a while, whatever its
+ * bucket holds. A successful sign-in clears the failure count, and so does going a whole
+ * lockout period without another failure.
+ *
+ * Buckets live in hash maps split into lock stripes by key, so attempts for different names
+ * rarely contend. There is no background thread: a bucket is refilled when it is next used,
+ * and a stripe that grows past a limit drops its buckets that have refilled completely and
+ * have no recent failures, since such a bucket behaves exactly like a missing one. The limit
+ * then grows with what the sweep kept, so each sweep is paid for by the buckets added since.
+ */
+public class LoginThrottle {
+
+	// Per userName: a burst of 5 attempts, then one every 20 seconds
+	public static final int DEFAULT_USER_CAPACITY = 5;
+	public static final Duration DEFAULT_USER_REFILL = Duration.ofSeconds(20);
+
+	// Per source: a burst of 30 attempts, then one per second
+	public static final int DEFAULT_SOURCE_CAPACITY = 30;
+	public static final Duration DEFAULT_SOURCE_REFILL = Duration.ofSeconds(1);
+
+	// Consecutive failures after which a userName is locked, and for how long
+	public static final int DEFAULT_LOCKOUT_THRESHOLD = 10;
+	public static final Duration DEFAULT_LOCKOUT = Duration.ofMinutes(15);
+
+	// The source used by the desktop client, which has no remote address
+	public static final String LOCAL_SOURCE = "desktop";
+
+	private static final int STRIPES = 64; // A power of two
+	private static final int SWEEP_THRESHOLD = 1024; // Buckets per stripe before idle ones are dropped
+
+	private static final Log LOG = Log.get(LoginThrottle.class);
+
+	/**
+	 * Why an attempt was rejected, or ALLOWED.
+	 */
+	public enum Outcome {
+		ALLOWED, USER_THROTTLED, SOURCE_THROTTLED, LOCKED_OUT
+	}
+
+	/**
+	 * The answer to one attempt: whether it may go ahead and, if not, how long to wait.
+	 */
+	public static final class Decision {
+		private static final Decision ALLOWED = new Decision(Outcome.ALLOWED, 0);
+
+		private final Outcome outcome;
+		private final long retryAfterNanos;
+
+		private Decision(Outcome outcome, long retryAfterNanos) {
+			this.outcome = outcome;
+			this.retryAfterNanos = retryAfterNanos;
+		}
+
+		public boolean isAllowed() { return outcome == Outcome.ALLOWED; }
+		public Outcome getOutcome() { return outcome; }
+		public Duration getRetryAfter() { return Duration.ofNanos(retryAfterNanos); }
+
+		// Whole seconds to wait, rounded up, e.g. for a Retry-After header or a message
+		public long getRetryAfterSeconds() {
+			return (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+		}
+	}
+
+	// Guarded by the lock of the stripe it belongs to
+	private static final class Bucket {
+		double tokens;
+		long refilledAtNanos;
+		int consecutiveFailures;
+		long lastFailureNanos;
+		long lockedUntilNanos;
+		boolean locked;
+
+		Bucket(double tokens, long nowNanos) {
+			this.tokens = tokens;
+			this.refilledAtNanos = nowNanos;
+		}
+	}
+
+	// One kind of bucket, e.g. per userName, with its own stripes and rates
+	private static final class BucketTable {
+		private final int capacity;
+		private final long nanosPerToken;
+		private final long failureMemoryNanos;
+		private final Object[] locks = new Object[STRIPES];
+		private final Map<String, Bucket>[] stripes;
+		private final int[] sweepAt = new int[STRIPES]; // Guarded by the stripe lock
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		BucketTable(int capacity, Duration refillPerToken, long failureMemoryNanos) {
+			this.capacity = capacity;
+			this.nanosPerToken = refillPerToken.toNanos();
+			this.failureMemoryNanos = failureMemoryNanos;
+			this.stripes = new Map[STRIPES];
+			for (int i = 0; i < STRIPES; i++) {
+				locks[i] = new Object();
+				stripes[i] = new HashMap<>();
+				sweepAt[i] = SWEEP_THRESHOLD;
+			}
+		}
+
+		int stripeOf(String key) {
+			int h = key.hashCode();
+			return (h ^ (h >>> 16)) & (STRIPES - 1);
+		}
+
+		// Returns the refilled bucket for a key, creating a full one if there is none; hold the stripe lock
+		Bucket bucket(int stripe, String key, long nowNanos) {
+			Map<String, Bucket> buckets = stripes[stripe];
+			Bucket bucket = buckets.get(key);
+			if (bucket == null) {
+				if (buckets.size() >= sweepAt[stripe]) {
+					sweep(buckets, nowNanos);
+					sweepAt[stripe] = Math.max(SWEEP_THRESHOLD, 2 * buckets.size());
+				}
+				bucket = new Bucket(capacity, nowNanos);
+				buckets.put(key, bucket);
+				return bucket;
+			}
+			refill(bucket, nowNanos);
+			return bucket;
+		}
+
+		void refill(Bucket bucket, long nowNanos) {
+			long elapsed = nowNanos - bucket.refilledAtNanos;
+			if (elapsed > 0) {
+				bucket.tokens = Math.min(capacity, bucket.tokens + (double) elapsed / nanosPerToken);
+				bucket.refilledAtNanos = nowNanos;
+			}
+			if (bucket.locked && nowNanos - bucket.lockedUntilNanos >= 0) {
+				bucket.locked = false;
+			}
+			if (bucket.consecutiveFailures > 0 && nowNanos - bucket.lastFailureNanos >= failureMemoryNanos) {
+				bucket.consecutiveFailures = 0;
+			}
+		}
+
+		// Time until the bucket holds a whole token again
+		long nanosUntilToken(Bucket bucket) {
+			return (long) Math.ceil((1 - bucket.tokens) * nanosPerToken);
+		}
+
+		// Drops buckets that are full and have nothing left to remember
+		private void sweep(Map<String, Bucket> buckets, long nowNanos) {
+			Iterator<Bucket> it = buckets.values().iterator();
+			while (it.hasNext()) {
+				Bucket bucket = it.next();
+				refill(bucket, nowNanos);
+				if (bucket.tokens >= capacity && !bucket.locked && bucket.consecutiveFailures == 0) {
+					it.remove();
+				}
+			}
+		}
+
+		int size() {
+			int size = 0;
+			for (int i = 0; i < STRIPES; i++) {
+				synchronized (locks[i]) {
+					size += stripes[i].size();
+				}
+			}
+			return size;
+		}
+	}
+
+	private final BucketTable users;
+	private final BucketTable sources;
+	private final int lockoutThreshold;
+	private final long lockoutNanos;
+
+	private final LongAdder allowed = new LongAdder();
+	private final LongAdder userThrottled = new LongAdder();
+	private final LongAdder sourceThrottled = new LongAdder();
+	private final LongAdder lockedOutAttempts = new LongAdder();
+	private final LongAdder lockouts = new LongAdder();
+
+	public LoginThrottle() {
+		this(DEFAULT_USER_CAPACITY, DEFAULT_USER_REFILL, DEFAULT_SOURCE_CAPACITY, DEFAULT_SOURCE_REFILL,
+				DEFAULT_LOCKOUT_THRESHOLD, DEFAULT_LOCKOUT);
+	}
+
+	public LoginThrottle(int userCapacity, Duration userRefill, int sourceCapacity, Duration sourceRefill,
+			int lockoutThreshold, Duration lockout) {
+		// Failures are forgotten a lockout period after the last one
+		this.users = new BucketTable(userCapacity, userRefill, lockout.toNanos());
+		this.sources = new BucketTable(sourceCapacity, sourceRefill, lockout.toNanos());
+		this.lockoutThreshold = lockoutThreshold;
+		this.lockoutNanos = lockout.toNanos();
+	}
+
+	/**
+	 * Decides whether a sign-in attempt may go ahead, taking a token from both buckets if so.
+	 * Call it before authenticating, and report the result with {@link #recordSuccess} or
+	 * {@link #recordFailure}.
+	 *
+	 * @param userName The userName being signed in to.
+	 * @param source   Where the attempt comes from, e.g. a client address.
+	 */
+	public Decision tryAcquire(String userName, String source) {
+		long now = System.nanoTime();
+
+		// Only one stripe lock is held at a time, so the two tables cannot deadlock
+		int userStripe = users.stripeOf(userName);
+		synchronized (users.locks[userStripe]) {
+			Bucket bucket = users.bucket(userStripe, userName, now);
+			if (bucket.locked) {
+				lockedOutAttempts.increment();
+				return new Decision(Outcome.LOCKED_OUT, bucket.lockedUntilNanos - now);
+			}
+			if (bucket.tokens < 1) {
+				userThrottled.increment();
+				return new Decision(Outcome.USER_THROTTLED, users.nanosUntilToken(bucket));
+			}
+			bucket.tokens -= 1;
+		}
+
+		long wait;
+		int sourceStripe = sources.stripeOf(source);
+		synchronized (sources.locks[sourceStripe]) {
+			Bucket bucket = sources.bucket(sourceStripe, source, now);
+			if (bucket.tokens >= 1) {
+				bucket.tokens -= 1;
+				allowed.increment();
+				return Decision.ALLOWED;
+			}
+			wait = sources.nanosUntilToken(bucket);
+		}
+		sourceThrottled.increment();
+
+		// The attempt never happened, so the userName gets its token back
+		synchronized (users.locks[userStripe]) {
+			Bucket bucket = users.bucket(userStripe, userName, now);
+			bucket.tokens = Math.min(users.capacity, bucket.tokens + 1);
+		}
+		return new Decision(Outcome.SOURCE_THROTTLED, wait);
+	}
+
+	// A correct password: the userName's failure count starts over
+	public void recordSuccess(String userName) {
+		int stripe = users.stripeOf(userName);
+		synchronized (users.locks[stripe]) {
+			Bucket bucket = users.stripes[stripe].get(userName);
+			if (bucket != null) {
+				bucket.consecutiveFailures = 0;
+			}
+		}
+	}
+
+	// A wrong password or unknown userName; locks the userName once it has failed too often in a row
+	public void recordFailure(String userName) {
+		long now = System.nanoTime();
+		int stripe = users.stripeOf(userName);
+		synchronized (users.locks[stripe]) {
+			Bucket bucket = users.bucket(stripe, userName, now);
+			bucket.lastFailureNanos = now;
+			if (++bucket.consecutiveFailures < lockoutThreshold) {
+				return;
+			}
+			bucket.consecutiveFailures = 0;
+			bucket.locked = true;
+			bucket.lockedUntilNanos = now + lockoutNanos;
+		}
+		lockouts.increment();
+		LOG.warn("Sign-in locked after repeated failures", "userName", userName);
+	}
+
+	// Lifts a lockout early, e.g. after an admin reset the password
+	public void unlock(String userName) {
+		int stripe = users.stripeOf(userName);
+		synchronized (users.locks[stripe]) {
+			users.stripes[stripe].remove(userName);
+		}
+	}
+
+	public long getAllowedCount() { return allowed.sum(); }
+	public long getUserThrottledCount() { return userThrottled.sum(); }
+	public long getSourceThrottledCount() { return sourceThrottled.sum(); }
+	public long getLockedOutAttemptCount() { return lockedOutAttempts.sum(); }
+	public long getLockoutCount() { return lockouts.sum(); }
+	public int getTrackedUserCount() { return users.size(); }
+	public int getTrackedSourceCount() { return sources.size(); }
+
+	@Override
+	public String toString() {
+		return "LoginThrottle[allowed=" + getAllowedCount() + ", userThrottled=" + getUserThrottledCount()
+				+ ", sourceThrottled=" + getSourceThrottledCount() + ", lockouts=" + getLockoutCount()
+				+ ", lockedOutAttempts=" + getLockedOutAttemptCount() + ", users=" + getTrackedUserCount()
+				+ ", sources=" + getTrackedSourceCount() + "]";
+	}
+}
@@ -0,0 +1,82 @@
+package databasePart1;
+
+/**
+ * The NamedQuery enum is the central registry of the SQL that DatabaseHelper runs on hot paths.
+ * Each constant is prepared at most once per pooled connection and then reused from the
+ * connection's statement cache, so repeated calls only bind parameters and execute.
+ */
+public enum NamedQuery {
+
+	// User accounts
+	REGISTER_USER("INSERT INTO cse360users (userName, password, name, email) VALUES (?, ?, ?, ?)"),
+	// One indexed lookup by the unique userName; the password is checked by the caller
+	AUTHENTICATE("SELECT u.userName, u.password, u.name, u.email, " + NamedQuery.ROLE_LIST + " AS role "
+			+ "FROM cse360users u WHERE u.userName = ?"),
+	COUNT_USERS("SELECT COUNT(*) AS count FROM cse360users"),
+	UPDATE_PASSWORD("UPDATE cse360users SET password = ? WHERE userName = ?"),
+	DELETE_USER("DELETE FROM cse360users WHERE userName = ?"), // user_roles rows cascade
+	// Admins are never deleted in bulk; an update count of 0 means the user is an admin or does not exist
+	DELETE_NON_ADMIN_USER("DELETE FROM cse360users u WHERE u.userName = ? AND NOT EXISTS "
+			+ "(SELECT 1 FROM user_roles r WHERE r.user_id = u.id AND r.role = 'admin')"),
+
+	// Roles, stored one row per (user, role) in user_roles
+	// No rows: the user does not exist; one row with a NULL role: the user exists without roles
+	USER_ROLES("SELECT r.role FROM cse360users u LEFT JOIN user_roles r ON r.user_id = u.id "
+			+ "WHERE u.userName = ? ORDER BY r.role"),
+	COUNT_ADMINS("SELECT COUNT(*) AS adminCount FROM user_roles WHERE role = 'admin'"),
+	ADD_ROLE("MERGE INTO user_roles (user_id, role) KEY (user_id, role) "
+			+ "SELECT id, ? FROM cse360users WHERE userName = ?"),
+	REMOVE_ROLE("DELETE FROM user_roles WHERE role = ? "
+			+ "AND user_id = (SELECT id FROM cse360users WHERE userName = ?)"),
+	REMOVE_ALL_ROLES("DELETE FROM user_roles WHERE user_id = (SELECT id FROM cse360users WHERE userName = ?)"),
+
+	// User listings, with each user's roles aggregated back into a comma-separated string
+	ALL_USERS("SELECT u.userName, " + NamedQuery.ROLE_LIST + " AS role FROM cse360users u ORDER BY u.id"),
+	ALL_USER_DETAILS("SELECT u.userName, u.password, " + NamedQuery.ROLE_LIST + " AS role, u.name, u.email "
+			+ "FROM cse360users u ORDER BY u.id"),
+	ALL_USERNAMES("SELECT userName FROM cse360users"),
+	// Every user without the password, for streaming exports
+	EXPORT_USERS("SELECT u.userName, u.name, u.email, " + NamedQuery.ROLE_LIST + " AS role "
+			+ "FROM cse360users u ORDER BY u.id"),
+	// Which of an array of userNames are already taken; used to dedupe bulk imports a batch at a time
+	EXISTING_USERNAMES("SELECT userName FROM cse360users WHERE userName = ANY(?)"),
+
+	// The rows named by an array of userNames, e.g. to refresh the rows a change event names
+	USERS_BY_USERNAME("SELECT u.id, u.userName, u.password, " + NamedQuery.ROLE_LIST + " AS role, u.name, u.email "
+			+ "FROM cse360users u WHERE u.userName = ANY(?) ORDER BY u.id"),
+
+	// Invitation codes; a code can only be read or claimed while it is unused and not expired.
+	// The last INSERT_INVITATION parameter is the time to live in seconds.
+	INSERT_INVITATION("INSERT INTO InvitationCodes (code, role, expiresAt) "
+			+ "VALUES (?, ?, DATEADD(SECOND, ?, LOCALTIMESTAMP))"),
+	INVITATION_ROLE("SELECT role FROM InvitationCodes WHERE code = ? AND isUsed = FALSE AND expiresAt > LOCALTIMESTAMP"),
+	INVITATION_STATUS("SELECT isUsed, expiresAt > LOCALTIMESTAMP AS isLive FROM InvitationCodes WHERE code = ?"),
+	// The state and roles of an array of codes, for bulk imports
+	INVITATIONS_BY_CODE("SELECT code, role, isUsed, expiresAt > LOCALTIMESTAMP AS isLive "
+			+ "FROM InvitationCodes WHERE code = ANY(?)"),
+	// Batched claim; an update count of 0 means another redemption got the code first or it just expired
+	MARK_INVITATION_USED("UPDATE InvitationCodes SET isUsed = TRUE "
+			+ "WHERE code = ? AND isUsed = FALSE AND expiresAt > LOCALTIMESTAMP"),
+	// Marks a live code as used and returns its roles in one atomic statement; no row means it was not available
+	CLAIM_INVITATION("SELECT role FROM FINAL TABLE "
+			+ "(UPDATE InvitationCodes SET isUsed = TRUE WHERE code = ? AND isUsed = FALSE AND expiresAt > LOCALTIMESTAMP)"),
+	// One bounded purge batch each, served by the (isUsed, expiresAt) index; the parameter is the batch size
+	PURGE_USED_INVITATIONS("SELECT code FROM OLD TABLE "
+			+ "(DELETE FROM InvitationCodes WHERE isUsed = TRUE FETCH FIRST ? ROWS ONLY)"),
+	PURGE_EXPIRED_INVITATIONS("SELECT code FROM OLD TABLE "
+			+ "(DELETE FROM InvitationCodes WHERE isUsed = FALSE AND expiresAt <= LOCALTIMESTAMP FETCH FIRST ? ROWS ONLY)");
+
+	// Correlated subquery that reads a user's roles through the (user_id, role) primary key
+	static final String ROLE_LIST = "COALESCE((SELECT LISTAGG(r.role, ',') WITHIN GROUP (ORDER BY r.role) "
+			+ "FROM user_roles r WHERE r.user_id = u.id), '')";
+
+	private final String sql;
+
+	NamedQuery(String sql) {
+		this.sql = sql;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+}
@@ -0,0 +1,76 @@
+package databasePart1;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The OperationMetrics class is the registry of {@link OperationStats} for one component,
+ * e.g. DatabaseHelper. Stats are shared by every instance of the component in the JVM and
+ * each one is registered with the platform MBean server when it is created, so JConsole or
+ * any JMX client can read it while the application runs.
+ */
+public final class OperationMetrics {
+
+	private static final ConcurrentMap<String, OperationMetrics> COMPONENTS = new ConcurrentHashMap<>();
+	private static final Log LOG = Log.get(OperationMetrics.class);
+
+	private final String component;
+	private final ConcurrentMap<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+	private OperationMetrics(String component) {
+		this.component = component;
+	}
+
+	// Returns the registry for a component, creating it on first use
+	public static OperationMetrics forComponent(String component) {
+		return COMPONENTS.computeIfAbsent(component, OperationMetrics::new);
+	}
+
+	// Returns the stats of an operation, creating and registering them on first use
+	public OperationStats operation(String name) {
+		return operations.computeIfAbsent(name, n -> {
+			OperationStats stats = new OperationStats(component, n);
+			register(stats);
+			return stats;
+		});
+	}
+
+	// Every operation of every component, sorted by component and name
+	public static List<OperationStats> allOperations() {
+		List<OperationStats> all = new ArrayList<>();
+		for (OperationMetrics metrics : COMPONENTS.values()) {
+			all.addAll(metrics.operations.values());
+		}
+		all.sort(Comparator.comparing(OperationStats::getComponent).thenComparing(OperationStats::getName));
+		return all;
+	}
+
+	// Clears the stats of every operation
+	public static void resetAll() {
+		for (OperationStats stats : allOperations()) {
+			stats.reset();
+		}
+	}
+
+	private static void register(OperationStats stats) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName("databasePart1:type=OperationStats,component="
+					+ stats.getComponent() + ",name=" + stats.getName());
+			if (!server.isRegistered(objectName)) {
+				server.registerMBean(stats, objectName);
+			}
+		} catch (JMException | SecurityException e) {
+			// The stats still work; they are just not visible over JMX
+			LOG.warn("Could not register metrics over JMX", "operation", stats.getName());
+		}
+	}
+}
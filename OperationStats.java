@@ -0,0 +1,190 @@
+package databasePart1;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The OperationStats class records the latency, call count and error count of one
+ * operation. Latencies go into a log-linear histogram: 16 buckets per power of two of
+ * nanoseconds, so a percentile is exact to within 1/16 of its value, in a fixed array.
+ * Recording a call with {@link #start()} and {@link #stop(long)} is two clock reads and a few
+ * uncontended atomic adds, and allocates nothing.
+ *
+ * Most instrumented methods wrap their body in {@link #time} or {@link #timeVoid}, which record
+ * the latency of every call and count the calls that throw:
+ * <pre>
+ * return STATS.time(() -> {
+ *     ...
+ * });
+ * </pre>
+ * The lambda captures the method's arguments, so each call allocates it, and a primitive
+ * result is boxed. That is noise next to a query, but the sign-in and cached lookup paths,
+ * which often answer from memory, call start(), {@link #failed()} and stop() directly. So do
+ * bodies that throw two different checked exceptions, which time() would widen to Exception.
+ * Methods that handle their own exceptions catch them around the call, or call failed() in
+ * their catch block, so the failure is still counted.
+ */
+public class OperationStats implements OperationStatsMXBean {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final String component;
+	private final String name;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	// A timed body that returns a value and may throw a checked exception
+	@FunctionalInterface
+	public interface Call<T, E extends Exception> {
+		T call() throws E;
+	}
+
+	// A timed body without a result
+	@FunctionalInterface
+	public interface Action<E extends Exception> {
+		void run() throws E;
+	}
+
+	OperationStats(String component, String name) {
+		this.component = component;
+		this.name = name;
+	}
+
+	// Runs the body, recording its latency and counting it as failed if it throws
+	public <T, E extends Exception> T time(Call<T, E> body) throws E {
+		long start = start();
+		try {
+			return body.call();
+		} catch (Throwable t) {
+			failed();
+			throw t;
+		} finally {
+			stop(start);
+		}
+	}
+
+	public <E extends Exception> void timeVoid(Action<E> body) throws E {
+		long start = start();
+		try {
+			body.run();
+		} catch (Throwable t) {
+			failed();
+			throw t;
+		} finally {
+			stop(start);
+		}
+	}
+
+	// Returns the start time to pass to stop()
+	public long start() {
+		return System.nanoTime();
+	}
+
+	// Records one call, successful or not
+	public void stop(long startNanos) {
+		long nanos = Math.max(0, System.nanoTime() - startNanos);
+		buckets.incrementAndGet(bucketOf(nanos));
+		calls.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	// Records that the current call failed; its latency is still recorded by stop()
+	public void failed() {
+		errors.increment();
+	}
+
+	// Values below 16 ns get a bucket each; above that, 16 buckets per power of two
+	static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+		int subBucket = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	// The largest value that falls into the bucket
+	static long bucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Returns the latency at the given quantile, in nanoseconds. The histogram is read without
+	 * stopping writers, so calls recorded during the read may or may not be counted.
+	 *
+	 * @param quantile Between 0 and 1, e.g. 0.99.
+	 */
+	public long getQuantileNanos(double quantile) {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	@Override
+	public String getComponent() { return component; }
+	@Override
+	public String getName() { return name; }
+	@Override
+	public long getCalls() { return calls.sum(); }
+	@Override
+	public long getErrors() { return errors.sum(); }
+
+	@Override
+	public double getMeanMillis() {
+		long count = calls.sum();
+		return count == 0 ? 0.0 : totalNanos.sum() / 1e6 / count;
+	}
+
+	@Override
+	public double getP50Millis() { return getQuantileNanos(0.50) / 1e6; }
+	@Override
+	public double getP99Millis() { return getQuantileNanos(0.99) / 1e6; }
+	@Override
+	public double getMaxMillis() { return maxNanos.get() / 1e6; }
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		calls.reset();
+		errors.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s.%s[calls=%d, errors=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms]",
+				component, name, getCalls(), getErrors(), getMeanMillis(), getP50Millis(), getP99Millis(),
+				getMaxMillis());
+	}
+}
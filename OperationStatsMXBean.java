@@ -0,0 +1,20 @@
+package databasePart1;
+
+/**
+ * The management interface of one instrumented operation, exported through JMX as
+ * databasePart1:type=OperationStats,component=...,name=...
+ * Latencies are in milliseconds and cover every call since start-up or the last reset.
+ */
+public interface OperationStatsMXBean {
+	String getComponent();
+	String getName();
+	long getCalls();
+	long getErrors();
+	double getMeanMillis();
+	double getP50Millis();
+	double getP99Millis();
+	double getMaxMillis();
+
+	// Clears the counts and the histogram
+	void reset();
+}
@@ -4,24 +4,30 @@ package application;
 public class PasswordEvaluator {
 	/**
 	 * <p> Title: Directed Graph-translated Password Assessor. </p>
-	 * 
-	 * <p> Description: A demonstration of the mechanical translation of Directed Graph 
-	 * diagram into an executable Java program using the Password Evaluator Directed Graph. 
-	 * The code detailed design is based on a while loop with a cascade of if statements</p>
-	 * 
+	 *
+	 * <p> Description: A demonstration of the mechanical translation of Directed Graph
+	 * diagram into an executable Java program using the Password Evaluator Directed Graph.
+	 * The directed graph is now driven by a character class table: each character is
+	 * classified with one array lookup and the result is an immutable {@link Result}, so
+	 * evaluations share no state, do no console I/O and can run concurrently.</p>
+	 *
 	 * <p> Copyright: Lynn Robert Carter © 2022 </p>
-	 * 
+	 *
 	 * @author Lynn Robert Carter
-	 * 
-	 * @version 0.00		2018-02-22	Initial baseline 
-	 * 
+	 *
+	 * @version 0.00		2018-02-22	Initial baseline
+	 *
 	 */
 
 	/**********************************************************************************************
-	 * 
-	 * Result attributes to be used for GUI applications where a detailed error message and a 
+	 *
+	 * Result attributes to be used for GUI applications where a detailed error message and a
 	 * pointer to the character of the error will enhance the user experience.
-	 * 
+	 *
+	 * These mirror the most recent call to evaluatePassword and are kept for existing callers.
+	 * They are shared by every thread, so concurrent code should use the Result returned by
+	 * evaluate instead.
+	 *
 	 */
 
 	public static String passwordErrorMessage = "";		// The error message text
@@ -33,127 +39,164 @@ public class PasswordEvaluator {
 	public static boolean foundSpecialChar = false;
 	public static boolean foundLongEnough = false;
 	public static boolean foundOtherChar = false;		// The flag that specifies an otherChar error
-	private static String inputLine = "";				// The input line
-	private static char currentChar;					// The current character in the line
-	private static int currentCharNdx;					// The index of the current character
-	private static boolean running;						// The flag that specifies if the FSM is 
-														// running
+
+	public static final String EMPTY_PASSWORD_MESSAGE = "*** Error *** The password is empty!";
+	public static final int MIN_LENGTH = 8;
+
+	// Updated allowed special characters according to FSM
+	private static final String SPECIAL_CHARACTERS = "~`!@#$%^&*()_-+{}[]|:,.?/";
+
+	// Flag bits recorded while scanning; every transition of the directed graph sets one of them
+	private static final int UPPER_CASE = 1;
+	private static final int LOWER_CASE = 1 << 1;
+	private static final int NUMERIC_DIGIT = 1 << 2;
+	private static final int SPECIAL_CHAR = 1 << 3;
+	private static final int OTHER_CHAR = 1 << 4;
+	private static final int LONG_ENOUGH = 1 << 5;
+	private static final int ALL_REQUIRED = UPPER_CASE | LOWER_CASE | NUMERIC_DIGIT | SPECIAL_CHAR | LONG_ENOUGH;
+
+	// The character classifier: the flag bit for each ASCII character, OTHER_CHAR for anything else
+	private static final byte[] CHARACTER_CLASS = new byte[128];
+
+	static {
+		for (int c = 0; c < CHARACTER_CLASS.length; c++) {
+			if (c >= 'A' && c <= 'Z')
+				CHARACTER_CLASS[c] = UPPER_CASE;
+			else if (c >= 'a' && c <= 'z')
+				CHARACTER_CLASS[c] = LOWER_CASE;
+			else if (c >= '0' && c <= '9')
+				CHARACTER_CLASS[c] = NUMERIC_DIGIT;
+			else if (SPECIAL_CHARACTERS.indexOf(c) >= 0)
+				CHARACTER_CLASS[c] = SPECIAL_CHAR;
+			else
+				CHARACTER_CLASS[c] = OTHER_CHAR;
+		}
+	}
+
+	// Every valid password evaluates to the same result, so it is shared
+	private static final Result VALID = new Result(ALL_REQUIRED, -1);
+
+	/**********
+	 * The immutable outcome of evaluating one password.
+	 */
+	public static final class Result {
+		private final int flags;
+		private final int indexOfOtherChar;
+
+		private Result(int flags, int indexOfOtherChar) {
+			this.flags = flags;
+			this.indexOfOtherChar = indexOfOtherChar;
+		}
+
+		public boolean isValid() { return (flags & (ALL_REQUIRED | OTHER_CHAR)) == ALL_REQUIRED; }
+		public boolean isEmpty() { return flags == 0 && indexOfOtherChar < 0; }
+		public boolean hasUpperCase() { return (flags & UPPER_CASE) != 0; }
+		public boolean hasLowerCase() { return (flags & LOWER_CASE) != 0; }
+		public boolean hasNumericDigit() { return (flags & NUMERIC_DIGIT) != 0; }
+		public boolean hasSpecialChar() { return (flags & SPECIAL_CHAR) != 0; }
+		public boolean isLongEnough() { return (flags & LONG_ENOUGH) != 0; }
+		public boolean hasOtherChar() { return (flags & OTHER_CHAR) != 0; }
+
+		// The index of the first character that is not allowed, or -1 if there is none
+		public int getIndexOfOtherChar() { return indexOfOtherChar; }
+
+		/**********
+		 * @return	An empty string if every condition is satisfied, otherwise a help description
+		 * 			listing the conditions that were not satisfied
+		 */
+		public String getErrorMessage() {
+			if (isValid())
+				return "";
+			if (isEmpty())
+				return EMPTY_PASSWORD_MESSAGE;
+
+			StringBuilder errMessage = new StringBuilder(96);
+			if (!hasUpperCase())
+				errMessage.append("Upper case; ");
+			if (!hasLowerCase())
+				errMessage.append("Lower case; ");
+			if (!hasNumericDigit())
+				errMessage.append("Numeric digits; ");
+			if (!hasSpecialChar())
+				errMessage.append("Special character; ");
+			if (!isLongEnough())
+				errMessage.append("Long Enough; ");
+			if (hasOtherChar())
+				errMessage.append("No invalid characters; ");
+			return errMessage.append("conditions were not satisfied").toString();
+		}
+	}
+
+	/**********
+	 * Runs the directed graph over the input and returns the flags it reached, with the
+	 * index of the first invalid character in the upper 32 bits (-1 if there is none).
+	 * Nothing is allocated, so this is the hot path shared by evaluate and isValid.
+	 */
+	private static long scan(CharSequence input) {
+		int flags = 0;
+		int indexOfOtherChar = -1;
+		int length = input.length();
+		for (int currentCharNdx = 0; currentCharNdx < length; currentCharNdx++) {
+			char currentChar = input.charAt(currentCharNdx);
+			int charClass = currentChar < CHARACTER_CLASS.length ? CHARACTER_CLASS[currentChar] : OTHER_CHAR;
+			if (charClass == OTHER_CHAR && indexOfOtherChar < 0)
+				indexOfOtherChar = currentCharNdx;
+			flags |= charClass;
+		}
+		if (length >= MIN_LENGTH)
+			flags |= LONG_ENOUGH;
+		return ((long) indexOfOtherChar << 32) | (flags & 0xFFFFFFFFL);
+	}
+
+	/**********
+	 * Evaluates a password without touching any shared state.
+	 *
+	 * @param input		The password to evaluate
+	 * @return			The immutable result of the evaluation
+	 */
+	public static Result evaluate(CharSequence input) {
+		long scanned = scan(input);
+		int flags = (int) scanned;
+		if ((flags & (ALL_REQUIRED | OTHER_CHAR)) == ALL_REQUIRED)
+			return VALID;
+		return new Result(flags, (int) (scanned >> 32));
+	}
 
 	/**********
-	 * This private method display the input line and then on a line under it displays an up arrow
-	 * at the point where an error should one be detected.  This method is designed to be used to 
-	 * display the error message on the console terminal.
-	 * 
-	 * @param input				The input string
-	 * @param currentCharNdx	The location where an error was found
-	 * @return					Two lines, the entire input line followed by a line with an up arrow
+	 * @param input		The password to check
+	 * @return			True if the password satisfies every condition; allocates nothing
 	 */
-	private static void displayInputState() {
-		// Display the entire input line
-		System.out.println(inputLine);
-		System.out.println(inputLine.substring(0,currentCharNdx) + "?");
-		System.out.println("The password size: " + inputLine.length() + "  |  The currentCharNdx: " + 
-				currentCharNdx + "  |  The currentChar: \"" + currentChar + "\"");
+	public static boolean isValid(CharSequence input) {
+		return ((int) scan(input) & (ALL_REQUIRED | OTHER_CHAR)) == ALL_REQUIRED;
 	}
 
 	/**********
 	 * This method is a mechanical transformation of a Directed Graph diagram into a Java
-	 * method.
-	 * 
+	 * method. It delegates to evaluate and then publishes the result in the static result
+	 * attributes above for existing GUI callers.
+	 *
 	 * @param input		The input string for directed graph processing
 	 * @return			An output string that is empty if every things is okay or it will be
-	 * 						a string with a help description of the error follow by two lines
-	 * 						that shows the input line follow by a line with an up arrow at the
-	 *						point where the error was found.
+	 * 						a string with a help description of the error
 	 */
-	
 	public static String evaluatePassword(String input) {
-		// The following are the local variable used to perform the Directed Graph simulation
-		passwordErrorMessage = "";
-		passwordIndexofError = 0;			// Initialize the IndexofError
-		inputLine = input;					// Save the reference to the input line as a global
-		currentCharNdx = 0;					// The index of the current character
-		
-		if(input.length() <= 0) return "*** Error *** The password is empty!";
-		
-		// The input is not empty, so we can access the first character
-		currentChar = input.charAt(0);		// The current character from the above indexed position
-
-		// The Directed Graph simulation continues until the end of the input is reached or at some 
-		// state the current character does not match any valid transition to a next state
+		Result result = evaluate(input);
+		String errMessage = result.getErrorMessage();
 
-		passwordInput = input;				// Save a copy of the input
-		foundUpperCase = false;				// Reset the Boolean flag
-		foundLowerCase = false;				// Reset the Boolean flag
-		foundNumericDigit = false;			// Reset the Boolean flag
-		foundSpecialChar = false;			// Reset the Boolean flag
-		foundNumericDigit = false;			// Reset the Boolean flag
-		foundLongEnough = false;			// Reset the Boolean flag
-		foundOtherChar = false;				// Reset the Boolean flag
-		running = true;						// Start the loop
-
-		// The Directed Graph simulation continues until the end of the input is reached or at some 
-		// state the current character does not match any valid transition
-		while (running) {
-			displayInputState();
-			// The cascading if statement sequentially tries the current character against all of the
-			// valid transitions
-			if (currentChar >= 'A' && currentChar <= 'Z') {
-				System.out.println("Upper case letter found");
-				foundUpperCase = true;
-			} else if (currentChar >= 'a' && currentChar <= 'z') {
-				System.out.println("Lower case letter found");
-				foundLowerCase = true;
-			} else if (currentChar >= '0' && currentChar <= '9') {
-				System.out.println("Digit found");
-				foundNumericDigit = true;
-			} else if ("~`!@#$%^&*()_-+{}[]|:,.?/".indexOf(currentChar) >= 0) { // Updated allowed special characters according to FSM
-				System.out.println("Special character found");
-				foundSpecialChar = true;
-			} else {
-				System.out.println("Other character found");
-				passwordIndexofError = currentCharNdx;
-				foundOtherChar = true;
-			}
-			if (currentCharNdx >= 7) {
-				System.out.println("At least 8 characters found");
-				foundLongEnough = true;
-			}
-			
-			// Go to the next character if there is one
-			currentCharNdx++;
-			if (currentCharNdx >= inputLine.length())
-				running = false;
-			else
-				currentChar = input.charAt(currentCharNdx);
-			
-			System.out.println();
+		passwordErrorMessage = errMessage;
+		if (result.isEmpty()) {
+			passwordIndexofError = 0;
+			return errMessage;
 		}
-		
-		String errMessage = "";
-		if (!foundUpperCase)
-			errMessage += "Upper case; ";
-		
-		if (!foundLowerCase)
-			errMessage += "Lower case; ";
-		
-		if (!foundNumericDigit)
-			errMessage += "Numeric digits; ";
-			
-		if (!foundSpecialChar)
-			errMessage += "Special character; ";
-			
-		if (!foundLongEnough)
-			errMessage += "Long Enough; ";
-		
-		if (foundOtherChar)
-			errMessage += "No invalid characters; ";
-		
-		if (errMessage == "")
-			return "";
-		
-		passwordIndexofError = currentCharNdx;
-		return errMessage + "conditions were not satisfied";
 
+		passwordInput = input;				// Save a copy of the input
+		foundUpperCase = result.hasUpperCase();
+		foundLowerCase = result.hasLowerCase();
+		foundNumericDigit = result.hasNumericDigit();
+		foundSpecialChar = result.hasSpecialChar();
+		foundLongEnough = result.isLongEnough();
+		foundOtherChar = result.hasOtherChar();
+		passwordIndexofError = result.isValid() ? 0 : input.length();
+		return errMessage;
 	}
 }
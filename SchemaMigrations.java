@@ -0,0 +1,211 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The SchemaMigrations class owns every change to the database schema as an ordered list of
+ * numbered migrations. The schema_version table records each migration that has been applied,
+ * so opening a database only reads that table and applies the migrations it has not seen yet;
+ * an up-to-date database runs no DDL at all.
+ *
+ * To change the schema, append a migration with the next number. Never edit or renumber one
+ * that has shipped, since databases that already applied it will not run it again. For the
+ * same reason each migration spells out its DDL in full rather than deriving it from
+ * application constants, such as UserQuery's fields, that may change after it ships.
+ * Migrations are written with IF NOT EXISTS so that a database created before schema_version
+ * existed can apply them all safely; H2 commits DDL immediately, so this also lets a
+ * migration that failed halfway simply run again on the next start.
+ */
+public final class SchemaMigrations {
+
+	// One schema change; it runs on a connection with auto-commit off and is committed with its version row
+	interface Step {
+		void apply(Connection conn, Statement statement) throws SQLException;
+	}
+
+	static final class Migration {
+		final int version;
+		final String description;
+		final Step step;
+
+		Migration(int version, String description, Step step) {
+			this.version = version;
+			this.description = description;
+			this.step = step;
+		}
+	}
+
+	private static final List<Migration> MIGRATIONS;
+
+	static {
+		List<Migration> migrations = new ArrayList<>();
+
+		migrations.add(new Migration(1, "Create the users and invitation codes tables", (conn, statement) -> {
+			statement.execute("CREATE TABLE IF NOT EXISTS cse360users ("
+					+ "id INT AUTO_INCREMENT PRIMARY KEY, "
+					+ "name VARCHAR(255), "
+					+ "email VARCHAR(255), "
+					+ "userName VARCHAR(255) UNIQUE, "
+					+ "password VARCHAR(255), "
+					+ "role VARCHAR(255))"); // Legacy comma-separated roles, moved to user_roles by migration 2
+			statement.execute("CREATE TABLE IF NOT EXISTS InvitationCodes ("
+					+ "code VARCHAR(10) PRIMARY KEY, "
+					+ "isUsed BOOLEAN DEFAULT FALSE, "
+					+ "role VARCHAR(255))");
+		}));
+
+		// One row per (user, role); the primary key serves per-user lookups and the role index
+		// serves "who has role X" counts and filters
+		migrations.add(new Migration(2, "Move user roles into user_roles", (conn, statement) -> {
+			statement.execute("CREATE TABLE IF NOT EXISTS user_roles ("
+					+ "user_id INT NOT NULL, "
+					+ "role VARCHAR(32) NOT NULL, "
+					+ "PRIMARY KEY (user_id, role), "
+					+ "FOREIGN KEY (user_id) REFERENCES cse360users(id) ON DELETE CASCADE)");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_user_roles_role ON user_roles (role, user_id)");
+			moveLegacyRoles(conn);
+		}));
+
+		// Lower-case search keys for the admin table's prefix search and sorting. Each has an
+		// ascending and a descending (key, id) index, since H2 does not scan an index backwards.
+		migrations.add(new Migration(3, "Add user search keys", (conn, statement) -> {
+			statement.execute("ALTER TABLE cse360users ADD COLUMN IF NOT EXISTS userNameKey VARCHAR(255) "
+					+ "GENERATED ALWAYS AS (COALESCE(LOWER(userName), ''))");
+			statement.execute("ALTER TABLE cse360users ADD COLUMN IF NOT EXISTS nameKey VARCHAR(255) "
+					+ "GENERATED ALWAYS AS (COALESCE(LOWER(name), ''))");
+			statement.execute("ALTER TABLE cse360users ADD COLUMN IF NOT EXISTS emailKey VARCHAR(255) "
+					+ "GENERATED ALWAYS AS (COALESCE(LOWER(email), ''))");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_users_userNameKey ON cse360users (userNameKey, id)");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_users_userNameKey_desc ON cse360users (userNameKey DESC, id DESC)");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_users_nameKey ON cse360users (nameKey, id)");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_users_nameKey_desc ON cse360users (nameKey DESC, id DESC)");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_users_emailKey ON cse360users (emailKey, id)");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_users_emailKey_desc ON cse360users (emailKey DESC, id DESC)");
+		}));
+
+		// When each code was issued and when it stops being redeemable; codes issued before this
+		// get a full time to live of 7 days from the upgrade. New codes are inserted with the
+		// current time to live, so the default only applies to those existing rows. Redemption
+		// checks go through the code primary key, and the index finds the rows to purge without
+		// scanning the table.
+		migrations.add(new Migration(4, "Add invitation code expiry", (conn, statement) -> {
+			statement.execute("ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS issuedAt TIMESTAMP "
+					+ "DEFAULT LOCALTIMESTAMP NOT NULL");
+			statement.execute("ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS expiresAt TIMESTAMP "
+					+ "DEFAULT DATEADD(SECOND, 604800, LOCALTIMESTAMP) NOT NULL");
+			statement.execute("CREATE INDEX IF NOT EXISTS idx_invitations_purge ON InvitationCodes (isUsed, expiresAt)");
+		}));
+
+		MIGRATIONS = Collections.unmodifiableList(migrations);
+	}
+
+	private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version ("
+			+ "version INT PRIMARY KEY, "
+			+ "description VARCHAR(255), "
+			+ "appliedAt TIMESTAMP DEFAULT LOCALTIMESTAMP)";
+	private static final String CURRENT_VERSION = "SELECT COALESCE(MAX(version), 0) FROM schema_version";
+	private static final String RECORD_VERSION = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+
+	// Several DatabaseHelpers in one process may open the same database at once
+	private static final Object LOCK = new Object();
+
+	private static final Log LOG = Log.get(SchemaMigrations.class);
+
+	private SchemaMigrations() {}
+
+	// The version a fully migrated database is at
+	public static int latestVersion() {
+		return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+	}
+
+	/**
+	 * Brings the database up to the latest version, applying each pending migration in order
+	 * and recording it in schema_version.
+	 *
+	 * @return The number of migrations applied; 0 when the schema was already current.
+	 */
+	public static int migrate(Connection conn) throws SQLException {
+		synchronized (LOCK) {
+			int current;
+			try (Statement statement = conn.createStatement()) {
+				statement.execute(CREATE_VERSION_TABLE);
+				try (ResultSet rs = statement.executeQuery(CURRENT_VERSION)) {
+					rs.next();
+					current = rs.getInt(1);
+				}
+			}
+			if (current > latestVersion()) {
+				LOG.warn("Database schema is newer than this application; no migrations applied", "version", current);
+				return 0;
+			}
+
+			int applied = 0;
+			for (Migration migration : MIGRATIONS) {
+				if (migration.version <= current) {
+					continue;
+				}
+				apply(conn, migration);
+				applied++;
+			}
+			if (applied > 0) {
+				LOG.info("Database schema migrated", "from", current, "to", latestVersion());
+			}
+			return applied;
+		}
+	}
+
+	private static void apply(Connection conn, Migration migration) throws SQLException {
+		LOG.info("Applying schema migration", "version", migration.version, "description", migration.description);
+		conn.setAutoCommit(false);
+		try (Statement statement = conn.createStatement();
+			 PreparedStatement record = conn.prepareStatement(RECORD_VERSION)) {
+			migration.step.apply(conn, statement);
+			record.setInt(1, migration.version);
+			record.setString(2, migration.description);
+			record.executeUpdate();
+			conn.commit();
+		} catch (SQLException | RuntimeException e) {
+			conn.rollback();
+			LOG.error("Schema migration failed", "version", migration.version, e);
+			throw e;
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
+	// Moves comma-separated roles from cse360users.role into user_roles and clears them, in the
+	// migration's transaction
+	private static void moveLegacyRoles(Connection conn) throws SQLException {
+		String selectLegacy = "SELECT id, role FROM cse360users WHERE role IS NOT NULL";
+		String insertRole = "MERGE INTO user_roles (user_id, role) KEY (user_id, role) VALUES (?, ?)";
+		String clearLegacy = "UPDATE cse360users SET role = NULL WHERE role IS NOT NULL";
+
+		try (Statement select = conn.createStatement();
+			 ResultSet rs = select.executeQuery(selectLegacy);
+			 PreparedStatement insert = conn.prepareStatement(insertRole)) {
+			int migrated = 0;
+			while (rs.next()) {
+				for (String role : DatabaseHelper.parseRoles(rs.getString("role"))) {
+					insert.setInt(1, rs.getInt("id"));
+					insert.setString(2, role);
+					insert.addBatch();
+				}
+				migrated++;
+			}
+			if (migrated > 0) {
+				insert.executeBatch();
+				try (Statement clear = conn.createStatement()) {
+					clear.executeUpdate(clearLegacy);
+				}
+				LOG.info("Migrated legacy roles to user_roles", "users", migrated);
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package databasePart1;
+
+/**
+ * The Session class is one signed-in user: the opaque token that identifies it, the
+ * authenticated principal and the role the user chose to act as. Sessions are created and
+ * expired by {@link SessionStore}; a session stays valid while it is used at least once per
+ * idle timeout, and never longer than the absolute timeout.
+ */
+public final class Session {
+	private final String token;
+	private final UserPrincipal principal;
+	private final long createdNanos;
+	private final long absoluteDeadlineNanos;
+
+	private volatile String role;
+	private volatile long lastAccessNanos;
+	private volatile boolean invalidated;
+
+	Session(String token, UserPrincipal principal, String role, long nowNanos, long absoluteTtlNanos) {
+		this.token = token;
+		this.principal = principal;
+		this.role = role;
+		this.createdNanos = nowNanos;
+		this.lastAccessNanos = nowNanos;
+		this.absoluteDeadlineNanos = nowNanos + absoluteTtlNanos;
+	}
+
+	public String getToken() { return token; }
+	public UserPrincipal getPrincipal() { return principal; }
+	public String getUserName() { return principal.getUserName(); }
+
+	// The role the user is acting as, or null until one is selected
+	public String getRole() { return role; }
+
+	public boolean isInvalidated() { return invalidated; }
+
+	void setRole(String role) {
+		this.role = role;
+	}
+
+	void invalidate() {
+		invalidated = true;
+	}
+
+	long getCreatedNanos() { return createdNanos; }
+	long getLastAccessNanos() { return lastAccessNanos; }
+
+	void touch(long nowNanos) {
+		lastAccessNanos = nowNanos;
+	}
+
+	// When the session expires if it is not used again
+	long deadlineNanos(long idleTtlNanos) {
+		long idleDeadline = lastAccessNanos + idleTtlNanos;
+		return idleDeadline - absoluteDeadlineNanos < 0 ? idleDeadline : absoluteDeadlineNanos;
+	}
+
+	boolean isExpired(long nowNanos, long idleTtlNanos) {
+		return invalidated || nowNanos - deadlineNanos(idleTtlNanos) >= 0;
+	}
+
+	@Override
+	public String toString() {
+		// The token is a credential, so only a prefix is shown
+		return "Session[" + token.substring(0, Math.min(6, token.length())) + "..., userName=" + getUserName()
+				+ ", role=" + role + "]";
+	}
+}
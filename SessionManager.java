@@ -1,29 +1,59 @@
-package application;
-
-public class SessionManager {
-    private static SessionManager instance;
-    private String currentUserName;
-    private String currentUserRole; // Add role storage
-
-    private SessionManager() {}
-
-    public static SessionManager getInstance() {
-        if (instance == null) {
-            instance = new SessionManager();
-        }
-        return instance;
-    }
-
-    public void setCurrentUser(String userName, String role) {
-        this.currentUserName = userName;
-        this.currentUserRole = role;
-    }
-
-    public String getCurrentUserName() {
-        return currentUserName;
-    }
-
-    public String getCurrentUserRole() {
-        return currentUserRole;
-    }
-}
+package application;
+
+import databasePart1.Session;
+import databasePart1.SessionStore;
+import databasePart1.UserPrincipal;
+
+/**
+ * The SessionManager class remembers which session the desktop client is signed in with.
+ * The sessions themselves live in a {@link SessionStore}, which can hold any number of them;
+ * this window only keeps the token of its own. A session that expires while the client is
+ * open reads as signed out.
+ */
+public class SessionManager {
+    private static final SessionManager INSTANCE = new SessionManager();
+
+    private final SessionStore sessionStore = new SessionStore();
+    private volatile String currentToken;
+
+    private SessionManager() {}
+
+    public static SessionManager getInstance() {
+        return INSTANCE;
+    }
+
+    public SessionStore getSessionStore() {
+        return sessionStore;
+    }
+
+    // Starts a session for the signed-in user, ending the one this client had before
+    public Session signIn(UserPrincipal principal, String role) {
+        Session session = sessionStore.create(principal, role);
+        String previous = currentToken;
+        currentToken = session.getToken();
+        sessionStore.invalidate(previous);
+        return session;
+    }
+
+    // Ends this client's session
+    public void signOut() {
+        String token = currentToken;
+        currentToken = null;
+        sessionStore.invalidate(token);
+    }
+
+    // Returns the live session, or null if signed out or expired
+    public Session getCurrentSession() {
+        return sessionStore.get(currentToken);
+    }
+
+    public String getCurrentUserName() {
+        Session session = getCurrentSession();
+        return session == null ? null : session.getUserName();
+    }
+
+    public String getCurrentUserRole() {
+        Session session = getCurrentSession();
+        return session == null ? null : session.getRole();
+    }
+}
@@ -0,0 +1,271 @@
+package databasePart1;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The SessionStore class keeps every signed-in session in a concurrent map keyed by an
+ * opaque random token, so any number of users can be signed in at once and a lookup is a
+ * single hash probe. Sessions expire after an idle timeout and after an absolute timeout,
+ * whichever comes first. A second map indexes the tokens by userName, so ending every session
+ * of a changed user costs only that user's sessions.
+ *
+ * Expiry is checked on every lookup, so an expired token is never accepted. Sessions that
+ * are simply abandoned are removed by a hashed timer wheel: each session sits in the slot of
+ * the tick it would expire at, and a background thread visits one slot per tick. Using a
+ * session does not move it in the wheel; when its slot comes up and it has been used since,
+ * it is put back at its new deadline. Scheduling and expiring are O(1).
+ */
+public class SessionStore implements AutoCloseable {
+
+	public static final Duration DEFAULT_IDLE_TTL = Duration.ofMinutes(30);
+	public static final Duration DEFAULT_ABSOLUTE_TTL = Duration.ofHours(8);
+
+	// 512 one-second slots: a wheel revolution is about 8.5 minutes
+	private static final int WHEEL_SLOTS = 512;
+	private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	// Last-access times closer together than this are not worth a write
+	private static final long TOUCH_GRANULARITY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final int TOKEN_BYTES = 32;
+	private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+	private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+	private static final Log LOG = Log.get(SessionStore.class);
+
+	private final long idleTtlNanos;
+	private final long absoluteTtlNanos;
+	private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+	// The tokens of each user's sessions; a set is only changed inside compute for its userName
+	private final ConcurrentHashMap<String, Set<String>> tokensByUserName = new ConcurrentHashMap<>();
+
+	// Slot i holds the sessions due at ticks congruent to i; each slot is guarded by its own list
+	private final List<List<WheelEntry>> wheel = new ArrayList<>(WHEEL_SLOTS);
+	private final long wheelStartNanos = System.nanoTime();
+	private volatile long processedTick;
+	private final ScheduledExecutorService expirer;
+
+	private final LongAdder created = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+
+	private static final class WheelEntry {
+		final Session session;
+		final long tick;
+
+		WheelEntry(Session session, long tick) {
+			this.session = session;
+			this.tick = tick;
+		}
+	}
+
+	public SessionStore() {
+		this(DEFAULT_IDLE_TTL, DEFAULT_ABSOLUTE_TTL);
+	}
+
+	public SessionStore(Duration idleTtl, Duration absoluteTtl) {
+		this.idleTtlNanos = idleTtl.toNanos();
+		this.absoluteTtlNanos = absoluteTtl.toNanos();
+		for (int i = 0; i < WHEEL_SLOTS; i++) {
+			wheel.add(new ArrayList<>());
+		}
+		expirer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "session-expirer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		expirer.scheduleAtFixedRate(this::advance, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Starts a session for an authenticated user.
+	 *
+	 * @param principal The user, as returned by {@link DatabaseHelper#authenticate}.
+	 * @param role      The role to act as, or null to select one later.
+	 * @return The new session; its token is the only way to find it again.
+	 */
+	public Session create(UserPrincipal principal, String role) {
+		if (role != null && !principal.hasRole(role)) {
+			throw new IllegalArgumentException("User " + principal.getUserName() + " does not have role " + role);
+		}
+		byte[] bytes = new byte[TOKEN_BYTES];
+		TOKEN_RANDOM.nextBytes(bytes);
+		String token = TOKEN_ENCODER.encodeToString(bytes);
+		Session session = new Session(token, principal, role, System.nanoTime(), absoluteTtlNanos);
+		sessions.put(token, session);
+		// Indexed after it is live, so invalidateUser either finds it or runs before it existed
+		tokensByUserName.compute(principal.getUserName(), (userName, tokens) -> {
+			Set<String> updated = tokens == null ? ConcurrentHashMap.newKeySet() : tokens;
+			updated.add(token);
+			return updated;
+		});
+		schedule(session);
+		created.increment();
+		LOG.debug("Session created", "userName", principal.getUserName(), "role", role);
+		return session;
+	}
+
+	// Returns the live session for a token and records the access, or null if there is none
+	public Session get(String token) {
+		if (token == null) {
+			return null;
+		}
+		Session session = sessions.get(token);
+		if (session == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		if (session.isExpired(now, idleTtlNanos)) {
+			expire(session);
+			return null;
+		}
+		if (now - session.getLastAccessNanos() >= TOUCH_GRANULARITY_NANOS) {
+			session.touch(now);
+		}
+		return session;
+	}
+
+	// Switches the role a session acts as; the user must hold it
+	public Session selectRole(String token, String role) {
+		Session session = get(token);
+		if (session == null) {
+			return null;
+		}
+		if (!session.getPrincipal().hasRole(role)) {
+			throw new IllegalArgumentException("User " + session.getUserName() + " does not have role " + role);
+		}
+		session.setRole(role);
+		return session;
+	}
+
+	// Ends a session, e.g. on logout
+	public void invalidate(String token) {
+		if (token == null) {
+			return;
+		}
+		Session session = sessions.remove(token);
+		if (session != null) {
+			unindex(session);
+			session.invalidate();
+			LOG.debug("Session ended", "userName", session.getUserName());
+		}
+	}
+
+	// Ends every session of a user, e.g. after the account was deleted; returns how many there were
+	public int invalidateUser(String userName) {
+		Set<String> tokens = tokensByUserName.remove(userName);
+		if (tokens == null) {
+			return 0;
+		}
+		int count = 0;
+		for (String token : tokens) {
+			Session session = sessions.remove(token);
+			if (session != null) {
+				session.invalidate();
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void unindex(Session session) {
+		tokensByUserName.computeIfPresent(session.getUserName(), (userName, tokens) -> {
+			tokens.remove(session.getToken());
+			return tokens.isEmpty() ? null : tokens;
+		});
+	}
+
+	private void expire(Session session) {
+		if (sessions.remove(session.getToken(), session)) {
+			unindex(session);
+			session.invalidate();
+			expired.increment();
+			LOG.debug("Session expired", "userName", session.getUserName());
+		}
+	}
+
+	// Puts a session into the slot of the tick at which it would expire
+	private void schedule(Session session) {
+		long deadline = session.deadlineNanos(idleTtlNanos);
+		long tick = Math.max(processedTick + 1, (deadline - wheelStartNanos + TICK_NANOS - 1) / TICK_NANOS);
+		List<WheelEntry> slot = wheel.get((int) (tick % WHEEL_SLOTS));
+		synchronized (slot) {
+			slot.add(new WheelEntry(session, tick));
+		}
+	}
+
+	// Runs once per tick on the expirer thread and visits every slot that has come due
+	private void advance() {
+		try {
+			long nowTick = (System.nanoTime() - wheelStartNanos) / TICK_NANOS;
+			while (processedTick < nowTick) {
+				long tick = processedTick + 1;
+				expireSlot(tick);
+				processedTick = tick;
+			}
+		} catch (RuntimeException e) {
+			// Never let one failure cancel the scheduled task
+			LOG.error("Session expiry failed", e);
+		}
+	}
+
+	private void expireSlot(long tick) {
+		List<WheelEntry> slot = wheel.get((int) (tick % WHEEL_SLOTS));
+		List<WheelEntry> due;
+		synchronized (slot) {
+			if (slot.isEmpty()) {
+				return;
+			}
+			due = new ArrayList<>(slot.size());
+			int kept = 0;
+			for (WheelEntry entry : slot) {
+				if (entry.tick > tick) {
+					slot.set(kept++, entry); // Due in a later revolution
+				} else {
+					due.add(entry);
+				}
+			}
+			slot.subList(kept, slot.size()).clear();
+		}
+		long now = System.nanoTime();
+		for (WheelEntry entry : due) {
+			Session session = entry.session;
+			if (session.isInvalidated() || sessions.get(session.getToken()) != session) {
+				continue; // Already ended
+			}
+			if (session.isExpired(now, idleTtlNanos)) {
+				expire(session);
+			} else {
+				schedule(session); // Used since it was scheduled
+			}
+		}
+	}
+
+	public int size() { return sessions.size(); }
+	public long getCreatedCount() { return created.sum(); }
+	public long getExpiredCount() { return expired.sum(); }
+	public Duration getIdleTtl() { return Duration.ofNanos(idleTtlNanos); }
+	public Duration getAbsoluteTtl() { return Duration.ofNanos(absoluteTtlNanos); }
+
+	@Override
+	public void close() {
+		expirer.shutdownNow();
+		sessions.clear();
+		tokensByUserName.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "SessionStore[sessions=" + size() + ", created=" + getCreatedCount() + ", expired="
+				+ getExpiredCount() + "]";
+	}
+}
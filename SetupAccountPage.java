@@ -2,11 +2,13 @@ package application;
 
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.geometry.Pos;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import java.sql.SQLException;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import databasePart1.*;
 
 /**
@@ -14,11 +16,21 @@ import databasePart1.*;
  * Users provide their userName, password, and a valid invitation code to register.
  */
 public class SetupAccountPage {
+    private static final Log LOG = Log.get(SetupAccountPage.class);
+
     private final DatabaseHelper databaseHelper;
+    private final AsyncDatabaseHelper asyncDatabase;
+
+    // The database call currently running for this page, if any
+    private CompletableFuture<?> pendingCall;
+
+    // The availability check for the userName being typed, if one is waiting on the database
+    private CompletableFuture<Boolean> pendingAvailabilityCheck;
 
     // Constructor to initialize with DatabaseHelper
     public SetupAccountPage(DatabaseHelper databaseHelper) {
         this.databaseHelper = databaseHelper;
+        this.asyncDatabase = new AsyncDatabaseHelper(databaseHelper);
     }
 
     /**
@@ -39,6 +51,12 @@ public class SetupAccountPage {
         userNameField.setPromptText("Enter Username");
         userNameField.setMaxWidth(250);
 
+        // Live "is this username free?" hint, updated on every keystroke
+        Label availabilityLabel = new Label();
+        availabilityLabel.setStyle("-fx-font-size: 12px;");
+        userNameField.textProperty().addListener((obs, oldName, newName) ->
+                checkAvailability(newName, availabilityLabel));
+
         PasswordField passwordField = new PasswordField();
         passwordField.setPromptText("Enter Password");
         passwordField.setMaxWidth(250);
@@ -57,6 +75,38 @@ public class SetupAccountPage {
         errorLabel.setStyle("-fx-text-fill: red; -fx-font-size: 12px;");
 
         Button setupButton = new Button("Setup");
+
+        // Shown while the account is being set up
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setMaxSize(24, 24);
+        Button cancelButton = new Button("Cancel");
+        HBox progressBox = new HBox(10, progressIndicator, cancelButton);
+        progressBox.setAlignment(Pos.CENTER);
+        progressBox.setVisible(false);
+
+        Runnable idle = () -> {
+            pendingCall = null;
+            setupButton.setDisable(false);
+            progressBox.setVisible(false);
+        };
+        Runnable busy = () -> {
+            setupButton.setDisable(true);
+            progressBox.setVisible(true);
+        };
+        Consumer<Throwable> onError = e -> {
+            idle.run();
+            LOG.error("Database error during account setup", e);
+            errorLabel.setText("An error occurred while setting up the account. Please try again.");
+        };
+
+        cancelButton.setOnAction(a -> {
+            if (pendingCall != null) {
+                pendingCall.cancel(true);
+            }
+            idle.run();
+            errorLabel.setText("Account setup cancelled.");
+        });
+
         setupButton.setOnAction(a -> {
             // Retrieve user input
             String name = nameField.getText();
@@ -88,65 +138,116 @@ public class SetupAccountPage {
                 return;
             }
 
-            try {
-                if (!databaseHelper.doesUserExist(userName)) {
-                    // Get roles from the invitation code
-                    String rolesString = databaseHelper.getRolesFromInvitationCode(code);
-                    
-                    if (rolesString != null) {
-                        List<String> roles = Arrays.asList(rolesString.split(","));
-
-                        // Check if there are multiple roles
-                        if (roles.size() > 1) {
-                            // Prompt user to select a role
-                            ChoiceDialog<String> roleDialog = new ChoiceDialog<>(roles.get(0), roles);
-                            roleDialog.setTitle("Select Role");
-                            roleDialog.setHeaderText("Multiple roles found.");
-                            roleDialog.setContentText("Please choose your role:");
-
-                            roleDialog.showAndWait().ifPresent(selectedRole -> {
-                                try {
-                                    // Create user with the selected role
-                                    User user = new User(userName, password, selectedRole, name, email);
-                                    databaseHelper.register(user);
-
-                                    // Navigate to the Welcome Login Page
-                                    new WelcomeLoginPage(databaseHelper).show(primaryStage, user);
-                                } catch (SQLException e) {
-                                    System.err.println("Database error: " + e.getMessage());
-                                    errorLabel.setText("An error occurred while setting up the account. Please try again.");
-                                    e.printStackTrace();
-                                }
-                            }); 
-
-                        } else {
-                            // If only one role, proceed with that role
-                            User user = new User(userName, password, roles.get(0), name, email);
-                            databaseHelper.register(user);
-
-                            // Navigate to the Welcome Login Page
-                            new WelcomeLoginPage(databaseHelper).show(primaryStage, user);
-                        }
+            errorLabel.setText("");
+            busy.run();
+            CompletableFuture<Boolean> existsCall = asyncDatabase.doesUserExist(userName);
+            pendingCall = existsCall;
+            AsyncDatabaseHelper.onFxThread(existsCall, exists -> {
+                if (exists) {
+                    idle.run();
+                    errorLabel.setText("This username is taken! Please use another.");
+                    return;
+                }
 
-                    } else {
+                // Look up the roles the invitation code grants; it is only redeemed once the account is created
+                CompletableFuture<List<String>> rolesCall = asyncDatabase.getInvitationRoles(code);
+                pendingCall = rolesCall;
+                AsyncDatabaseHelper.onFxThread(rolesCall, roles -> {
+                    idle.run();
+                    if (roles == null || roles.isEmpty()) {
                         errorLabel.setText("Please enter a valid or unused invitation code.");
+                        return;
                     }
-                } else {
-                    errorLabel.setText("This username is taken! Please use another.");
-                }
-            } catch (SQLException e) {
-                System.err.println("Database error: " + e.getMessage());
-                errorLabel.setText("An error occurred while setting up the account. Please try again.");
-                e.printStackTrace();
-            }
+
+                    // Check if there are multiple roles
+                    if (roles.size() > 1) {
+                        // Prompt user to select a role
+                        ChoiceDialog<String> roleDialog = new ChoiceDialog<>(roles.get(0), roles);
+                        roleDialog.setTitle("Select Role");
+                        roleDialog.setHeaderText("Multiple roles found.");
+                        roleDialog.setContentText("Please choose your role:");
+
+                        roleDialog.showAndWait().ifPresent(selectedRole ->
+                                redeemAndContinue(primaryStage, code, new User(userName, password, selectedRole, name, email),
+                                        errorLabel, busy, idle, onError));
+                    } else {
+                        // If only one role, proceed with that role
+                        redeemAndContinue(primaryStage, code, new User(userName, password, roles.get(0), name, email),
+                                errorLabel, busy, idle, onError);
+                    }
+                }, onError);
+            }, onError);
         }); 
 
-        VBox layout = new VBox(10, nameField, emailField, userNameField, passwordField, confirmPassField, inviteCodeField, setupButton, errorLabel);
+        VBox layout = new VBox(10, nameField, emailField, userNameField, availabilityLabel, passwordField, confirmPassField, inviteCodeField, setupButton, progressBox, errorLabel);
         layout.setStyle("-fx-padding: 20; -fx-alignment: center;");
 
         primaryStage.setScene(new Scene(layout, 800, 400));
         primaryStage.setTitle("Account Setup");
         primaryStage.show();
     } 
+
+    // Shows whether a userName is free. Names the Bloom filter rules out are answered right away;
+    // only possible matches are confirmed with the database.
+    private void checkAvailability(String userName, Label availabilityLabel) {
+        if (pendingAvailabilityCheck != null) {
+            pendingAvailabilityCheck.cancel(true);
+            pendingAvailabilityCheck = null;
+        }
+        if (userName.isEmpty()) {
+            availabilityLabel.setText("");
+            return;
+        }
+        if (!databaseHelper.mightUserExist(userName)) {
+            showAvailability(availabilityLabel, true);
+            return;
+        }
+        CompletableFuture<Boolean> check = asyncDatabase.doesUserExist(userName);
+        pendingAvailabilityCheck = check;
+        AsyncDatabaseHelper.onFxThread(check, exists -> {
+            if (pendingAvailabilityCheck == check) {
+                pendingAvailabilityCheck = null;
+                showAvailability(availabilityLabel, !exists);
+            }
+        }, e -> availabilityLabel.setText(""));
+    }
+
+    private void showAvailability(Label availabilityLabel, boolean available) {
+        if (available) {
+            availabilityLabel.setText("Username is available.");
+            availabilityLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: green;");
+        } else {
+            availabilityLabel.setText("This username is taken.");
+            availabilityLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: red;");
+        }
+    }
+
+    // Redeems the code and registers the user in one transaction, then navigates to the Welcome Login Page
+    private void redeemAndContinue(Stage primaryStage, String code, User user, Label errorLabel, Runnable busy,
+            Runnable idle, Consumer<Throwable> onError) {
+        busy.run();
+        CompletableFuture<InvitationRedemption> redeemCall = asyncDatabase.redeemInvitationCode(code, user);
+        pendingCall = redeemCall;
+        AsyncDatabaseHelper.onFxThread(redeemCall, redemption -> {
+            idle.run();
+            switch (redemption.getStatus()) {
+                case REDEEMED:
+                    new WelcomeLoginPage(databaseHelper).show(primaryStage, user);
+                    break;
+                case USERNAME_TAKEN:
+                    errorLabel.setText("This username is taken! Please use another.");
+                    break;
+                case ALREADY_USED:
+                    errorLabel.setText("This invitation code has already been used.");
+                    break;
+                case EXPIRED:
+                    errorLabel.setText("This invitation code has expired. Please ask for a new one.");
+                    break;
+                default:
+                    errorLabel.setText("Please enter a valid or unused invitation code.");
+                    break;
+            }
+        }, onError);
+    }
 }
  
@@ -4,36 +4,145 @@ package application;
 
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
-import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import databasePart1.DatabaseHelper;
+import databasePart1.Log;
 
 
 public class StartCSE360 extends Application {
+	private static final Log LOG = Log.get(StartCSE360.class);
 
-	private static final DatabaseHelper databaseHelper = new DatabaseHelper();
+	// Pooled connections whose statements are prepared while the loading window is up
+	private static final int STARTUP_PRECOMPILED_CONNECTIONS = 2;
+
+	// Created in the background, since loading DatabaseHelper also registers its JMX metrics
+	private volatile DatabaseHelper databaseHelper;
 	
+	// With --headless the application serves its HTTP/JSON API instead of opening a window
 	public static void main( String[] args )
 	{
+		if (Arrays.asList(args).contains("--headless")) {
+			try {
+				HeadlessServer.main(args);
+			} catch (Exception e) {
+				LOG.error("Could not start the headless server", e);
+				System.exit(1);
+			}
+			return;
+		}
 		 launch(args);
 	}
 	
+	/**
+	 * Shows a loading window at once and prepares the database in the background. Opening the
+	 * database also brings its schema up to date; after that the username filter, statement
+	 * pre-compilation and the user count run in parallel, and the first page is chosen from
+	 * the count. The time of each phase, to the first frame and to the first page is logged.
+	 */
 	@Override
     public void start(Stage primaryStage) {
-        try {
-            databaseHelper.connectToDatabase(); // Connect to the database
-            if (databaseHelper.isDatabaseEmpty()) {
+		StartupTimings timings = new StartupTimings();
+
+		Label statusLabel = new Label("Starting...");
+		ProgressIndicator progressIndicator = new ProgressIndicator();
+		progressIndicator.setMaxSize(48, 48);
+		VBox layout = new VBox(10, progressIndicator, statusLabel);
+		layout.setStyle("-fx-alignment: center; -fx-padding: 20;");
+		Scene loadingScene = new Scene(layout, 800, 400);
+		primaryStage.setScene(loadingScene);
+		primaryStage.setTitle("CSE360");
+		primaryStage.show();
+		afterNextPulse(loadingScene, () -> timings.milestone("firstFrame"));
+
+		ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+		long backgroundStart = timings.start();
+		CompletableFuture<Boolean> ready = task(executor, timings, "openDatabase", () -> {
+			DatabaseHelper db = new DatabaseHelper();
+			db.openDatabase(); // Connect to the database and migrate the schema
+			return db;
+		}).thenCompose(db -> {
+			databaseHelper = db;
+			// Both only speed up later calls, so the application starts without them if they fail
+			CompletableFuture<Object> filter = task(executor, timings, "usernameFilter", () -> {
+				db.rebuildUsernameFilter();
+				return null;
+			}).exceptionally(e -> warmUpFailed("usernameFilter", e));
+			CompletableFuture<Object> statements = task(executor, timings, "precompileStatements",
+					() -> (Object) db.precompileStatements(STARTUP_PRECOMPILED_CONNECTIONS))
+					.exceptionally(e -> warmUpFailed("precompileStatements", e));
+			CompletableFuture<Boolean> empty = task(executor, timings, "countUsers", db::isDatabaseEmpty);
+			return CompletableFuture.allOf(filter, statements, empty).thenApply(v -> empty.join());
+		});
+		ready.whenComplete((empty, error) -> {
+			executor.shutdown();
+			timings.phase("background", backgroundStart);
+		});
+
+		AsyncDatabaseHelper.onFxThread(ready, empty -> {
+            if (empty) {
             	
             	new FirstPage(databaseHelper).show(primaryStage);
             } else {
             	new SetupLoginSelectionPage(databaseHelper).show(primaryStage);
                 
             }
-        } catch (SQLException e) {
-        	System.out.println(e.getMessage());
-        }
+            afterNextPulse(primaryStage.getScene(), () -> {
+            	timings.milestone("interactive");
+            	System.out.println(timings);
+            });
+        }, error -> {
+        	LOG.error("Could not open the database", error);
+        	progressIndicator.setVisible(false);
+        	statusLabel.setText("Could not open the database: " + error.getMessage());
+        });
     }
-	
 
+	// Runs one startup task on its own virtual thread and records how long it took
+	private static <T> CompletableFuture<T> task(ExecutorService executor, StartupTimings timings, String name,
+			Callable<T> work) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		executor.execute(() -> {
+			long start = timings.start();
+			try {
+				result.complete(work.call());
+			} catch (Throwable t) {
+				result.completeExceptionally(t);
+			} finally {
+				timings.phase(name, start);
+			}
+		});
+		return result;
+	}
+
+	private static Object warmUpFailed(String phase, Throwable error) {
+		LOG.warn("Startup " + phase + " failed; continuing without it", AsyncDatabaseHelper.unwrap(error));
+		return null;
+	}
+
+	// Runs an action once the scene's next pulse has been laid out, right before it is drawn
+	private static void afterNextPulse(Scene scene, Runnable action) {
+		Runnable[] listener = new Runnable[1];
+		boolean[] ran = new boolean[1];
+		listener[0] = () -> {
+			if (ran[0]) {
+				return;
+			}
+			ran[0] = true;
+			// The scene is iterating its listeners, so this one is removed after the pulse
+			Platform.runLater(() -> scene.removePostLayoutPulseListener(listener[0]));
+			action.run();
+		};
+		scene.addPostLayoutPulseListener(listener[0]);
+	}
 }
@@ -0,0 +1,56 @@
+package application;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import databasePart1.Log;
+
+/**
+ * The StartupTimings class records how long each phase of application startup takes, and the
+ * two milestones users notice: time to first frame, when the loading window is drawn, and time
+ * to interactive, when the first real page is drawn. Milestones are measured from JVM start so
+ * the numbers can be compared across releases; phases that run in parallel each report their
+ * own duration.
+ */
+final class StartupTimings {
+
+	private static final Log LOG = Log.get(StartupTimings.class);
+
+	// The JVM start time as a System.nanoTime() value, so every timing uses the same clock
+	private final long jvmStartNanos;
+	private final List<String> phases = new ArrayList<>(); // Guarded by this
+
+	StartupTimings() {
+		long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		this.jvmStartNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(uptimeMillis);
+	}
+
+	long start() {
+		return System.nanoTime();
+	}
+
+	// Records a phase that began at a value returned by start()
+	void phase(String name, long startNanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		synchronized (this) {
+			phases.add(name + "=" + millis + "ms");
+		}
+		LOG.info("Startup phase", "phase", name, "millis", millis);
+	}
+
+	// Records a milestone, measured from JVM start
+	void milestone(String name) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - jvmStartNanos);
+		synchronized (this) {
+			phases.add(name + "=" + millis + "ms");
+		}
+		LOG.info("Startup milestone", "milestone", name, "millisSinceJvmStart", millis);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Startup[" + String.join(", ", phases) + "]";
+	}
+}
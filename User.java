@@ -12,6 +12,7 @@ public class User {
     private final StringProperty role;
     private final StringProperty name;  
     private final StringProperty email; 
+    private int id; // The database id, or 0 if the user was not read with it
 
     // Constructor to initialize a new User object with userName, password, role, name, and email.
     public User(String userName, String password, String role, String name, String email) {
@@ -44,4 +45,7 @@ public class User {
 
     public String getEmail() { return email.get(); }
     public void setEmail(String email) { this.email.set(email); }
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
 }
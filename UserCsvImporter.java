@@ -0,0 +1,324 @@
+package application;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import databasePart1.DatabaseHelper;
+import databasePart1.Log;
+
+/**
+ * The UserCsvImporter class loads a roster of users from a CSV file. The file is streamed
+ * one record at a time and only the current batch is held in memory, so the size of the
+ * roster does not matter. Every row is validated with the same userName and password rules
+ * as the setup page; valid rows are registered a batch per transaction by
+ * {@link DatabaseHelper#importUserBatch}, and rejected rows are written to a reject file
+ * with the reason.
+ *
+ * The first line is a header naming the columns: name, email, username, password, roles and
+ * the optional code. Roles are separated by ';' or '|', or by ',' inside a quoted field. Rows
+ * without a password are rejected rather than given a shared default anyone could guess.
+ */
+public class UserCsvImporter {
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private static final Log LOG = Log.get(UserCsvImporter.class);
+
+	/**
+	 * A snapshot of an import in progress, reported after every batch.
+	 */
+	public static final class Progress {
+		private final long rowsRead;
+		private final long imported;
+		private final long rejected;
+
+		Progress(long rowsRead, long imported, long rejected) {
+			this.rowsRead = rowsRead;
+			this.imported = imported;
+			this.rejected = rejected;
+		}
+
+		public long getRowsRead() { return rowsRead; }
+		public long getImported() { return imported; }
+		public long getRejected() { return rejected; }
+
+		@Override
+		public String toString() {
+			return rowsRead + " rows read, " + imported + " imported, " + rejected + " rejected";
+		}
+	}
+
+	private final DatabaseHelper databaseHelper;
+	private final int batchSize;
+
+	public UserCsvImporter(DatabaseHelper databaseHelper) {
+		this(databaseHelper, DEFAULT_BATCH_SIZE);
+	}
+
+	public UserCsvImporter(DatabaseHelper databaseHelper, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be at least 1");
+		}
+		this.databaseHelper = databaseHelper;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Imports a CSV file and writes the rejected rows next to it.
+	 *
+	 * @param csvFile    The roster to import.
+	 * @param rejectFile The file that receives the rejected rows.
+	 * @param progress   Called after every batch; may be null.
+	 * @return The final counts.
+	 */
+	public Progress importFile(Path csvFile, Path rejectFile, Consumer<Progress> progress)
+			throws IOException, SQLException {
+		try (Reader in = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8);
+				Writer rejects = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8)) {
+			return importUsers(in, rejects, progress);
+		}
+	}
+
+	/**
+	 * Streams users from a CSV reader into the database. The import stops after the current
+	 * batch if the calling thread is interrupted; batches already committed stay committed.
+	 *
+	 * @param in       The CSV input, starting with the header line.
+	 * @param rejects  Receives one CSV line per rejected row: line number, reason and the row.
+	 * @param progress Called after every batch; may be null.
+	 * @return The final counts.
+	 */
+	public Progress importUsers(Reader in, Writer rejects, Consumer<Progress> progress)
+			throws IOException, SQLException {
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		int[] lineNumber = { 0 };
+
+		List<String> header = readRecord(reader, lineNumber);
+		if (header == null) {
+			return new Progress(0, 0, 0);
+		}
+		Map<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < header.size(); i++) {
+			columns.put(header.get(i).trim().toLowerCase(Locale.ROOT).replace(" ", ""), i);
+		}
+		int nameColumn = column(columns, "name");
+		int emailColumn = column(columns, "email");
+		int userNameColumn = column(columns, "username");
+		int rolesColumn = column(columns, "roles", "role");
+		int codeColumn = column(columns, "code", "invitecode", "invitationcode");
+		int passwordColumn = column(columns, "password");
+		if (userNameColumn < 0 || passwordColumn < 0 || (rolesColumn < 0 && codeColumn < 0)) {
+			throw new IOException("The CSV header must name username and password columns and a roles or code column");
+		}
+		writeRecord(rejects, List.of("line", "reason", "name", "email", "username", "roles", "code"));
+
+		List<User> users = new ArrayList<>(batchSize);
+		List<String> codes = new ArrayList<>(batchSize);
+		List<Integer> lines = new ArrayList<>(batchSize);
+		long rowsRead = 0;
+		long imported = 0;
+		long rejected = 0;
+
+		List<String> record;
+		while ((record = readRecord(reader, lineNumber)) != null) {
+			if (record.size() == 1 && record.get(0).isBlank()) {
+				continue; // Blank line
+			}
+			rowsRead++;
+			String name = field(record, nameColumn);
+			String email = field(record, emailColumn);
+			String userName = field(record, userNameColumn);
+			String roles = field(record, rolesColumn).replace(';', ',').replace('|', ',');
+			String code = field(record, codeColumn);
+			String password = field(record, passwordColumn);
+
+			String rejection = validate(userName, password, roles, code);
+			if (rejection != null) {
+				writeReject(rejects, lineNumber[0], rejection, name, email, userName, roles, code);
+				rejected++;
+				continue;
+			}
+
+			users.add(new User(userName, password, roles, name, email));
+			codes.add(code.isEmpty() ? null : code);
+			lines.add(lineNumber[0]);
+			if (users.size() == batchSize) {
+				long batchImported = flush(users, codes, lines, rejects);
+				imported += batchImported;
+				rejected += users.size() - batchImported;
+				users.clear();
+				codes.clear();
+				lines.clear();
+				report(progress, rowsRead, imported, rejected);
+				if (Thread.currentThread().isInterrupted()) {
+					break;
+				}
+			}
+		}
+		if (!users.isEmpty() && !Thread.currentThread().isInterrupted()) {
+			long batchImported = flush(users, codes, lines, rejects);
+			imported += batchImported;
+			rejected += users.size() - batchImported;
+		}
+		rejects.flush();
+
+		Progress result = new Progress(rowsRead, imported, rejected);
+		report(progress, rowsRead, imported, rejected);
+		LOG.info("User import finished", "imported", imported, "rejected", rejected);
+		return result;
+	}
+
+	// Returns the reason a row cannot be imported, or null if it is valid
+	private static String validate(String userName, String password, String roles, String code) {
+		String userNameError = UserNameRecognizer.checkForValidUserName(userName);
+		if (!userNameError.isEmpty()) {
+			return userNameError.trim();
+		}
+		if (password.isEmpty()) {
+			return "No password";
+		}
+		PasswordEvaluator.Result passwordResult = PasswordEvaluator.evaluate(password);
+		if (!passwordResult.isValid()) {
+			return "Password: " + passwordResult.getErrorMessage();
+		}
+		if (roles.isBlank() && code.isEmpty()) {
+			return "No roles and no invitation code";
+		}
+		for (String role : roles.split(",")) {
+			String trimmed = role.trim();
+			if (!trimmed.isEmpty() && !UserRolePrivileges.ROLES.contains(trimmed)) {
+				return "Unknown role: " + trimmed + " (use one of " + String.join(", ", UserRolePrivileges.ROLES) + ")";
+			}
+		}
+		return null;
+	}
+
+	// Registers one batch and writes the rows the database rejected; returns the number imported
+	private long flush(List<User> users, List<String> codes, List<Integer> lines, Writer rejects)
+			throws SQLException, IOException {
+		List<String> rejections = databaseHelper.importUserBatch(users, codes);
+		long imported = 0;
+		for (int i = 0; i < users.size(); i++) {
+			if (rejections.get(i) == null) {
+				imported++;
+			} else {
+				User user = users.get(i);
+				writeReject(rejects, lines.get(i), rejections.get(i), user.getName(), user.getEmail(),
+						user.getUserName(), user.getRole(), codes.get(i) == null ? "" : codes.get(i));
+			}
+		}
+		return imported;
+	}
+
+	private static void report(Consumer<Progress> progress, long rowsRead, long imported, long rejected) {
+		if (progress != null) {
+			progress.accept(new Progress(rowsRead, imported, rejected));
+		}
+	}
+
+	private static int column(Map<String, Integer> columns, String... names) {
+		for (String name : names) {
+			Integer index = columns.get(name);
+			if (index != null) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	private static String field(List<String> record, int column) {
+		return column < 0 || column >= record.size() ? "" : record.get(column).trim();
+	}
+
+	private static void writeReject(Writer rejects, int line, String reason, String name, String email,
+			String userName, String roles, String code) throws IOException {
+		writeRecord(rejects, List.of(String.valueOf(line), reason, name, email, userName, roles, code));
+	}
+
+	// Writes one CSV record, quoting fields that contain a separator, quote or line break
+	private static void writeRecord(Writer out, List<String> fields) throws IOException {
+		for (int i = 0; i < fields.size(); i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			String field = fields.get(i);
+			if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+					|| field.indexOf('\r') >= 0) {
+				out.write('"');
+				out.write(field.replace("\"", "\"\""));
+				out.write('"');
+			} else {
+				out.write(field);
+			}
+		}
+		out.write(System.lineSeparator());
+	}
+
+	/**
+	 * Reads one CSV record (RFC 4180): fields separated by commas, optionally quoted, with
+	 * doubled quotes for a literal quote. A quoted field may span lines.
+	 *
+	 * @return The fields, or null at the end of the input.
+	 */
+	static List<String> readRecord(BufferedReader reader, int[] lineNumber) throws IOException {
+		String line = reader.readLine();
+		if (line == null) {
+			return null;
+		}
+		lineNumber[0]++;
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		int i = 0;
+		while (true) {
+			if (i == line.length()) {
+				if (!quoted) {
+					break;
+				}
+				// The quoted field continues on the next line
+				line = reader.readLine();
+				if (line == null) {
+					break;
+				}
+				lineNumber[0]++;
+				field.append('\n');
+				i = 0;
+				continue;
+			}
+			char c = line.charAt(i++);
+			if (quoted) {
+				if (c == '"') {
+					if (i < line.length() && line.charAt(i) == '"') {
+						field.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					field.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+}
@@ -0,0 +1,139 @@
+package databasePart1;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The UserDirectoryCache class keeps recently looked-up users in memory: whether the userName
+ * exists and which roles it has. Entries are evicted least-recently-used once the cache is
+ * full and expire after a fixed time to live.
+ *
+ * DatabaseHelper writes through to the cache after every change it commits. Each write also
+ * bumps a generation counter, and a value loaded from the database is only stored if no write
+ * happened while it was being read, so a slow reader can never put back a stale entry.
+ */
+public class UserDirectoryCache {
+
+	/**
+	 * A cached directory entry. Users that do not exist are cached too, with no roles.
+	 */
+	public static final class Entry {
+		private final boolean exists;
+		private final List<String> roles;
+		private final long expiresAtNanos;
+
+		Entry(boolean exists, List<String> roles, long expiresAtNanos) {
+			this.exists = exists;
+			this.roles = Collections.unmodifiableList(roles);
+			this.expiresAtNanos = expiresAtNanos;
+		}
+
+		public boolean exists() { return exists; }
+		public List<String> getRoles() { return roles; }
+	}
+
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final AtomicLong generation = new AtomicLong();
+
+	// Access-ordered so the eldest entry is the least recently used one
+	private final LinkedHashMap<String, Entry> entries;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public UserDirectoryCache(int maxEntries, long ttl, TimeUnit unit) {
+		this.maxEntries = maxEntries;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() <= UserDirectoryCache.this.maxEntries) {
+					return false;
+				}
+				evictions.increment();
+				return true;
+			}
+		};
+	}
+
+	// Returns the cached entry, or null if the user is not cached or the entry has expired
+	public Entry get(String userName) {
+		synchronized (entries) {
+			Entry entry = entries.get(userName);
+			if (entry != null && System.nanoTime() - entry.expiresAtNanos < 0) {
+				hits.increment();
+				return entry;
+			}
+			if (entry != null) {
+				entries.remove(userName);
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
+	// Call before reading a user from the database; pass the result to putIfCurrent
+	public long currentGeneration() {
+		return generation.get();
+	}
+
+	// Caches a value read from the database unless a write happened since the read started
+	public void putIfCurrent(String userName, boolean exists, List<String> roles, long readGeneration) {
+		synchronized (entries) {
+			if (generation.get() == readGeneration) {
+				entries.put(userName, newEntry(exists, roles));
+			}
+		}
+	}
+
+	// Stores the state of a user that was just committed to the database
+	public void put(String userName, boolean exists, List<String> roles) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.put(userName, newEntry(exists, roles));
+		}
+	}
+
+	// Drops a user whose new state is not known, e.g. after a single role was added
+	public void invalidate(String userName) {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.remove(userName);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			generation.incrementAndGet();
+			entries.clear();
+		}
+	}
+
+	private Entry newEntry(boolean exists, List<String> roles) {
+		return new Entry(exists, roles, System.nanoTime() + ttlNanos);
+	}
+
+	// Cache metrics
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHits() { return hits.sum(); }
+	public long getMisses() { return misses.sum(); }
+	public long getEvictions() { return evictions.sum(); }
+
+	@Override
+	public String toString() {
+		return "UserDirectoryCache[size=" + size() + "/" + maxEntries + ", hits=" + getHits() + ", misses="
+				+ getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+}
@@ -0,0 +1,239 @@
+package application;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.List;
+
+import databasePart1.DatabaseHelper;
+import databasePart1.UserPrincipal;
+
+/**
+ * The UserExporter class writes every user to a channel as CSV or JSON Lines. Rows are
+ * read with a forward-only database cursor and encoded into a fixed-size buffer that is
+ * written out whenever it fills, so memory use does not grow with the size of the table.
+ * Passwords are never exported.
+ *
+ * It runs from the admin dashboard or headlessly:
+ * java application.UserExporter [--format csv|jsonl] [--fetch-size 500] [--db jdbc-url] output-file|-
+ */
+public class UserExporter {
+
+	public static final int DEFAULT_FETCH_SIZE = 500;
+
+	// Encoded output is written to the channel in chunks of this size
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public enum Format {
+		CSV("csv"),
+		JSON_LINES("jsonl");
+
+		private final String extension;
+
+		Format(String extension) {
+			this.extension = extension;
+		}
+
+		public String getExtension() { return extension; }
+
+		// Accepts "csv", "jsonl" or "json"
+		public static Format fromName(String name) {
+			switch (name.toLowerCase()) {
+				case "csv":
+					return CSV;
+				case "jsonl":
+				case "json":
+					return JSON_LINES;
+				default:
+					throw new IllegalArgumentException("Unknown export format: " + name);
+			}
+		}
+	}
+
+	private final DatabaseHelper databaseHelper;
+	private final int fetchSize;
+
+	public UserExporter(DatabaseHelper databaseHelper) {
+		this(databaseHelper, DEFAULT_FETCH_SIZE);
+	}
+
+	public UserExporter(DatabaseHelper databaseHelper, int fetchSize) {
+		this.databaseHelper = databaseHelper;
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Streams every user to the channel. The channel is not closed.
+	 *
+	 * @param channel The destination.
+	 * @param format  CSV with a header line, or one JSON object per line.
+	 * @return The number of users written.
+	 */
+	public long export(WritableByteChannel channel, Format format) throws SQLException, IOException {
+		ChannelWriter out = new ChannelWriter(channel);
+		StringBuilder line = new StringBuilder(256);
+		if (format == Format.CSV) {
+			out.write("userName,name,email,roles\n");
+		}
+		long count = databaseHelper.forEachUser(fetchSize, user -> {
+			line.setLength(0);
+			if (format == Format.CSV) {
+				appendCsv(line, user);
+			} else {
+				appendJson(line, user);
+			}
+			out.write(line);
+		});
+		out.flush();
+		return count;
+	}
+
+	// Exports to a file, replacing it
+	public long export(Path file, Format format) throws SQLException, IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			return export(channel, format);
+		}
+	}
+
+	private static void appendCsv(StringBuilder line, UserPrincipal user) {
+		appendCsvField(line, user.getUserName()).append(',');
+		appendCsvField(line, user.getName()).append(',');
+		appendCsvField(line, user.getEmail()).append(',');
+		appendCsvField(line, String.join(",", user.getRoles())).append('\n');
+	}
+
+	private static StringBuilder appendCsvField(StringBuilder line, String value) {
+		if (value == null) {
+			return line;
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return line.append(value);
+		}
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				line.append('"');
+			}
+			line.append(c);
+		}
+		return line.append('"');
+	}
+
+	private static void appendJson(StringBuilder line, UserPrincipal user) {
+		line.append("{\"userName\":");
+		Json.appendString(line, user.getUserName());
+		line.append(",\"name\":");
+		Json.appendString(line, user.getName());
+		line.append(",\"email\":");
+		Json.appendString(line, user.getEmail());
+		line.append(",\"roles\":[");
+		List<String> roles = user.getRoles();
+		for (int i = 0; i < roles.size(); i++) {
+			if (i > 0) {
+				line.append(',');
+			}
+			Json.appendString(line, roles.get(i));
+		}
+		line.append("]}\n");
+	}
+
+	// Encodes text as UTF-8 into one reusable buffer and drains it to the channel when full
+	private static final class ChannelWriter {
+		private final WritableByteChannel channel;
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		ChannelWriter(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		void write(CharSequence text) throws IOException {
+			CharBuffer chars = CharBuffer.wrap(text);
+			while (true) {
+				CoderResult result = encoder.encode(chars, buffer, false);
+				if (result.isOverflow()) {
+					drain();
+				} else if (result.isUnderflow()) {
+					return;
+				} else {
+					result.throwException();
+				}
+			}
+		}
+
+		void flush() throws IOException {
+			drain();
+		}
+
+		private void drain() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Format format = Format.CSV;
+		int fetchSize = DEFAULT_FETCH_SIZE;
+		String dbUrl = null;
+		String output = null;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--format":
+					format = Format.fromName(args[++i]);
+					break;
+				case "--fetch-size":
+					fetchSize = Integer.parseInt(args[++i]);
+					break;
+				case "--db":
+					dbUrl = args[++i];
+					break;
+				default:
+					output = args[i];
+			}
+		}
+		if (output == null) {
+			System.err.println("Usage: java application.UserExporter [--format csv|jsonl] [--fetch-size n] "
+					+ "[--db jdbc-url] output-file|-");
+			System.exit(2);
+		}
+
+		WritableByteChannel stdout = null;
+		if (output.equals("-")) {
+			// Keep standard output for the export itself; status messages go to standard error
+			stdout = Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+			System.setOut(System.err);
+		}
+
+		DatabaseHelper databaseHelper = dbUrl == null ? new DatabaseHelper() : new DatabaseHelper(dbUrl);
+		databaseHelper.connectToDatabase();
+		try {
+			UserExporter exporter = new UserExporter(databaseHelper, fetchSize);
+			long count;
+			if (stdout != null) {
+				count = exporter.export(stdout, format);
+			} else {
+				count = exporter.export(Paths.get(output), format);
+			}
+			System.err.println("Exported " + count + " users.");
+		} finally {
+			databaseHelper.closeConnection();
+		}
+	}
+}
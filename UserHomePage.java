@@ -29,6 +29,7 @@ public class UserHomePage {
 	    Button logoutButton = new Button("Logout");
 	    logoutButton.setMinWidth(100);
 	    logoutButton.setOnAction(e -> {
+	    	SessionManager.getInstance().signOut();
 	    	SetupLoginSelectionPage setupLoginPage = new SetupLoginSelectionPage(databaseHelper);
 	    	setupLoginPage.show(primaryStage); // Sends to SetupLoginSelectionPage
 	    });
@@ -2,11 +2,14 @@ package application;
 
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.geometry.Pos;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import application.SessionManager;
-import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 
 import databasePart1.*;
@@ -17,11 +20,17 @@ import databasePart1.*;
  */
 
 public class UserLoginPage {
+    private static final Log LOG = Log.get(UserLoginPage.class);
 
     private final DatabaseHelper databaseHelper;
+    private final AsyncDatabaseHelper asyncDatabase;
+
+    // The database call currently running for this page, if any
+    private CompletableFuture<?> pendingCall;
     
     public UserLoginPage(DatabaseHelper databaseHelper) {
         this.databaseHelper = databaseHelper;
+        this.asyncDatabase = new AsyncDatabaseHelper(databaseHelper);
     }
 
     public void show(Stage primaryStage) {
@@ -40,6 +49,33 @@ public class UserLoginPage {
 
         Button loginButton = new Button("Login");
 
+        // Shown while the database is checking the credentials
+        ProgressIndicator progressIndicator = new ProgressIndicator();
+        progressIndicator.setMaxSize(24, 24);
+        Button cancelButton = new Button("Cancel");
+        HBox progressBox = new HBox(10, progressIndicator, cancelButton);
+        progressBox.setAlignment(Pos.CENTER);
+        progressBox.setVisible(false);
+
+        Runnable idle = () -> {
+            pendingCall = null;
+            loginButton.setDisable(false);
+            progressBox.setVisible(false);
+        };
+        Consumer<Throwable> onError = e -> {
+            idle.run();
+            LOG.error("Database error during login", e);
+            errorLabel.setText("Error connecting to the database.");
+        };
+
+        cancelButton.setOnAction(a -> {
+            if (pendingCall != null) {
+                pendingCall.cancel(true);
+            }
+            idle.run();
+            errorLabel.setText("Login cancelled.");
+        });
+
         loginButton.setOnAction(a -> {
             // Retrieve user inputs
             String userName = userNameField.getText();
@@ -51,78 +87,77 @@ public class UserLoginPage {
                 return;
             }
 
-            try {
-                User user = new User(userName, password, "", "", "");
-                WelcomeLoginPage welcomeLoginPage = new WelcomeLoginPage(databaseHelper);
-
-                // Retrieve the user's roles from the database
-                List<String> roles = databaseHelper.getUserRoles(userName);
+            // Too many recent attempts are turned away before the database is asked
+            LoginThrottle throttle = databaseHelper.getLoginThrottle();
+            LoginThrottle.Decision decision = throttle.tryAcquire(userName, LoginThrottle.LOCAL_SOURCE);
+            if (!decision.isAllowed()) {
+                errorLabel.setText(decision.getOutcome() == LoginThrottle.Outcome.LOCKED_OUT
+                        ? "Too many failed attempts. This account is locked for "
+                                + decision.getRetryAfterSeconds() + " seconds."
+                        : "Too many login attempts. Try again in " + decision.getRetryAfterSeconds() + " seconds.");
+                return;
+            }
 
-                if (roles.isEmpty()) {
-                    errorLabel.setText("User account does not exist.");
-                    return;
-                }
+            WelcomeLoginPage welcomeLoginPage = new WelcomeLoginPage(databaseHelper);
 
-                // Validate login with the first available role
-                user.setRole(roles.get(0));
+            errorLabel.setText("");
+            loginButton.setDisable(true);
+            progressBox.setVisible(true);
 
-                if (!databaseHelper.login(user)) {
+            // Check the credentials and fetch every role in one round trip
+            CompletableFuture<UserPrincipal> authCall = asyncDatabase.authenticate(userName, password);
+            pendingCall = authCall;
+            AsyncDatabaseHelper.onFxThread(authCall, principal -> {
+                idle.run();
+                if (principal == null) {
+                    throttle.recordFailure(userName);
                     errorLabel.setText("Invalid username or password.");
                     return;
                 }
+                throttle.recordSuccess(userName);
+                List<String> roles = principal.getRoles();
+                if (roles.isEmpty()) {
+                    errorLabel.setText("User account has no roles assigned.");
+                    return;
+                }
 
                 // Log successful login
-                System.out.println("User " + userName + " logged in successfully.");
+                LOG.info("User logged in", "userName", userName);
 
+                User user = new User(principal.getUserName(), password, roles.get(0), principal.getName(),
+                        principal.getEmail());
                 if (roles.size() == 1) {
                     // Single role, proceed automatically
-                    processLogin(primaryStage, user, roles.get(0), welcomeLoginPage);
+                    processLogin(primaryStage, principal, user, roles.get(0), welcomeLoginPage);
                 } else {
-                    // Multiple roles, show selection dialog
+                    // Multiple roles, show selection dialog; the choice needs no further database access
                     ChoiceDialog<String> roleDialog = new ChoiceDialog<>(roles.get(0), roles);
                     roleDialog.setTitle("Select Role");
                     roleDialog.setHeaderText("Multiple roles found.");
                     roleDialog.setContentText("Please choose your role:");
 
-                    roleDialog.showAndWait().ifPresent(selectedRole -> {
-                        try {
-                            user.setRole(selectedRole);
-                            if (!databaseHelper.login(user)) {
-                                errorLabel.setText("Invalid username or password for selected role.");
-                                return;
-                            }
-                            processLogin(primaryStage, user, selectedRole, welcomeLoginPage);
-                        } catch (SQLException e) {
-                            System.err.println("Database error: " + e.getMessage());
-                            errorLabel.setText("Error connecting to the database.");
-                            e.printStackTrace();
-                        }
-                    });
+                    roleDialog.showAndWait().ifPresent(selectedRole ->
+                            processLogin(primaryStage, principal, user, selectedRole, welcomeLoginPage));
                 }
-
-            } catch (SQLException e) {
-                System.err.println("Database error: " + e.getMessage());
-                errorLabel.setText("Error connecting to the database.");
-                e.printStackTrace();
-            }
+            }, onError);
         });
 
         VBox layout = new VBox(10);
         layout.setStyle("-fx-padding: 20; -fx-alignment: center;");
-        layout.getChildren().addAll(userNameField, passwordField, loginButton, errorLabel);
+        layout.getChildren().addAll(userNameField, passwordField, loginButton, progressBox, errorLabel);
 
         primaryStage.setScene(new Scene(layout, 800, 400));
         primaryStage.setTitle("User Login");
         primaryStage.show();
     }
-
     
     // Helper method to handle role-based navigation
-    private void processLogin(Stage primaryStage, User user, String role, WelcomeLoginPage welcomeLoginPage) {
+    private void processLogin(Stage primaryStage, UserPrincipal principal, User user, String role,
+            WelcomeLoginPage welcomeLoginPage) {
         user.setRole(role);
-        SessionManager.getInstance().setCurrentUser(user.getUserName(), role);
+        SessionManager.getInstance().signIn(principal, role);
 
-        System.out.println("User " + user.getUserName() + " selected role: " + role);
+        LOG.debug("Role selected", "userName", user.getUserName(), "role", role);
 
         if (role.equals("admin")) {
             AdminHomePage adminPage = new AdminHomePage(databaseHelper);
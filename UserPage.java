@@ -0,0 +1,37 @@
+package databasePart1;
+
+import java.util.Collections;
+import java.util.List;
+
+import application.User;
+
+/**
+ * The UserPage class holds one page of a keyset-paginated user listing.
+ * The sort key and id of the last row are the cursor for the next page, so fetching page N
+ * never re-reads the rows of the pages before it.
+ */
+public class UserPage {
+	private final List<User> users;
+	private final int lastId;
+	private final String lastSortKey;
+	private final boolean hasMore;
+
+	public UserPage(List<User> users, int lastId, String lastSortKey, boolean hasMore) {
+		this.users = Collections.unmodifiableList(users);
+		this.lastId = lastId;
+		this.lastSortKey = lastSortKey;
+		this.hasMore = hasMore;
+	}
+
+	// The users on this page, in the query's order: by sort key, then id
+	public List<User> getUsers() { return users; }
+
+	// The id of the last row; the whole cursor when the query sorts by id, otherwise its second half
+	public int getLastId() { return lastId; }
+
+	// The sort key of the last row when the page is sorted by a column; the cursor's first half
+	public String getLastSortKey() { return lastSortKey; }
+
+	// True if at least one more row exists after this page
+	public boolean hasMore() { return hasMore; }
+}
@@ -0,0 +1,38 @@
+package databasePart1;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The UserPrincipal class is the immutable identity returned by a successful
+ * {@link DatabaseHelper#authenticate(String, String)}. It carries every role the user
+ * holds, so choosing which role to act as needs no further database access.
+ * The password is never part of a principal.
+ */
+public final class UserPrincipal {
+	private final String userName;
+	private final String name;
+	private final String email;
+	private final List<String> roles;
+
+	public UserPrincipal(String userName, String name, String email, List<String> roles) {
+		this.userName = userName;
+		this.name = name;
+		this.email = email;
+		this.roles = Collections.unmodifiableList(roles);
+	}
+
+	public String getUserName() { return userName; }
+	public String getName() { return name; }
+	public String getEmail() { return email; }
+
+	// All roles held by the user, in alphabetical order
+	public List<String> getRoles() { return roles; }
+
+	public boolean hasRole(String role) { return roles.contains(role); }
+
+	@Override
+	public String toString() {
+		return "UserPrincipal[userName=" + userName + ", roles=" + roles + "]";
+	}
+}
@@ -0,0 +1,203 @@
+package databasePart1;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Objects;
+
+import application.User;
+
+/**
+ * The UserQuery class describes a server-side search of the users table: an optional
+ * case-insensitive prefix on the userName, name or email, an optional role, and the sort
+ * order. Each searchable field has a generated lower-case key column with ascending and
+ * descending (key, id) indexes, so both the filter and the sort are served by one index
+ * range scan and pages continue from a (key, id) cursor.
+ *
+ * Queries are immutable; the with methods return a changed copy.
+ */
+public final class UserQuery {
+
+	public enum Field {
+		USERNAME("userName", "userNameKey", "Username"),
+		NAME("name", "nameKey", "Name"),
+		EMAIL("email", "emailKey", "Email");
+
+		private final String column;
+		private final String keyColumn;
+		private final String label;
+
+		Field(String column, String keyColumn, String label) {
+			this.column = column;
+			this.keyColumn = keyColumn;
+			this.label = label;
+		}
+
+		public String getColumn() { return column; }
+		public String getKeyColumn() { return keyColumn; }
+
+		@Override
+		public String toString() { return label; }
+
+		// The same key the database generates for this field of a user
+		public String keyOf(User user) {
+			String value;
+			switch (this) {
+				case NAME:
+					value = user.getName();
+					break;
+				case EMAIL:
+					value = user.getEmail();
+					break;
+				default:
+					value = user.getUserName();
+			}
+			return value == null ? "" : value.toLowerCase(Locale.ROOT);
+		}
+	}
+
+	private static final UserQuery ALL = new UserQuery(Field.USERNAME, "", null, null, false);
+
+	private final Field searchField;
+	private final String searchPrefix;
+	private final String role;
+	private final Field sortField;
+	private final boolean descending;
+
+	private UserQuery(Field searchField, String searchPrefix, String role, Field sortField, boolean descending) {
+		this.searchField = searchField;
+		this.searchPrefix = searchPrefix;
+		this.role = role;
+		this.sortField = sortField;
+		this.descending = descending;
+	}
+
+	// Every user, in id order
+	public static UserQuery all() {
+		return ALL;
+	}
+
+	// Only users whose field starts with the prefix, ignoring case; an empty prefix matches everyone
+	public UserQuery searching(Field field, String prefix) {
+		String normalized = prefix == null ? "" : prefix.trim().toLowerCase(Locale.ROOT);
+		return new UserQuery(field, normalized, role, sortField, descending);
+	}
+
+	// Only users with the role; null for any role
+	public UserQuery withRole(String role) {
+		return new UserQuery(searchField, searchPrefix, role == null || role.isEmpty() ? null : role, sortField,
+				descending);
+	}
+
+	// Sorted by the field, then by id; a null field sorts by id only
+	public UserQuery sortedBy(Field field, boolean descending) {
+		return new UserQuery(searchField, searchPrefix, role, field, descending);
+	}
+
+	public Field getSearchField() { return searchField; }
+	public String getSearchPrefix() { return searchPrefix; }
+	public String getRole() { return role; }
+	public Field getSortField() { return sortField; }
+	public boolean isDescending() { return descending; }
+
+	// True if the user passes the filters; used to place rows announced by change events
+	public boolean matches(User user) {
+		if (!searchPrefix.isEmpty() && !searchField.keyOf(user).startsWith(searchPrefix)) {
+			return false;
+		}
+		return role == null || DatabaseHelper.parseRoles(user.getRole()).contains(role);
+	}
+
+	// The order of the rows, the same as the SQL's: by sort key, then id. The users need their ids.
+	public Comparator<User> comparator() {
+		Comparator<User> byId = Comparator.comparingInt(User::getId);
+		Comparator<User> order = byId;
+		if (sortField != null) {
+			Comparator<User> byKey = Comparator.comparing(sortField::keyOf);
+			order = byKey.thenComparing(byId);
+		}
+		return descending ? order.reversed() : order;
+	}
+
+	// Builds the page query; the cursor clause is only added after the first page
+	String toSql(boolean afterCursor) {
+		StringBuilder sql = new StringBuilder("SELECT u.id, u.userName, u.password, ")
+				.append(NamedQuery.ROLE_LIST).append(" AS role, u.name, u.email");
+		if (sortField != null) {
+			sql.append(", u.").append(sortField.getKeyColumn()).append(" AS sortKey");
+		}
+		sql.append(" FROM cse360users u WHERE TRUE");
+		if (!searchPrefix.isEmpty()) {
+			sql.append(" AND u.").append(searchField.getKeyColumn()).append(" LIKE ? ESCAPE '\\'");
+		}
+		if (role != null) {
+			sql.append(" AND EXISTS (SELECT 1 FROM user_roles r WHERE r.user_id = u.id AND r.role = ?)");
+		}
+		String direction = descending ? " DESC" : "";
+		if (sortField == null) {
+			if (afterCursor) {
+				sql.append(descending ? " AND u.id < ?" : " AND u.id > ?");
+			}
+			sql.append(" ORDER BY u.id").append(direction);
+		} else {
+			String key = "u." + sortField.getKeyColumn();
+			if (afterCursor) {
+				// The first comparison bounds the index range; the second skips rows already returned
+				sql.append(descending
+						? " AND " + key + " <= ? AND (" + key + " < ? OR u.id < ?)"
+						: " AND " + key + " >= ? AND (" + key + " > ? OR u.id > ?)");
+			}
+			sql.append(" ORDER BY ").append(key).append(direction).append(", u.id").append(direction);
+		}
+		return sql.append(" FETCH FIRST ? ROWS ONLY").toString();
+	}
+
+	// Binds the parameters of toSql in order
+	void bind(PreparedStatement pstmt, String afterKey, int afterId, boolean afterCursor, int limit)
+			throws SQLException {
+		int index = 1;
+		if (!searchPrefix.isEmpty()) {
+			pstmt.setString(index++, DatabaseHelper.escapeLike(searchPrefix) + "%");
+		}
+		if (role != null) {
+			pstmt.setString(index++, role);
+		}
+		if (afterCursor) {
+			if (sortField != null) {
+				pstmt.setString(index++, afterKey);
+				pstmt.setString(index++, afterKey);
+			}
+			pstmt.setInt(index++, afterId);
+		}
+		pstmt.setInt(index, limit);
+	}
+
+	// Two queries are equal if they return the same rows in the same order
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof UserQuery)) {
+			return false;
+		}
+		UserQuery query = (UserQuery) other;
+		return searchPrefix.equals(query.searchPrefix)
+				&& (searchPrefix.isEmpty() || searchField == query.searchField)
+				&& Objects.equals(role, query.role)
+				&& sortField == query.sortField
+				&& descending == query.descending;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(searchPrefix, searchPrefix.isEmpty() ? null : searchField, role, sortField, descending);
+	}
+
+	@Override
+	public String toString() {
+		return "UserQuery[" + searchField + " starts with '" + searchPrefix + "', role=" + role + ", sort="
+				+ (sortField == null ? "id" : sortField) + (descending ? " desc" : "") + "]";
+	}
+}
@@ -1,5 +1,11 @@
 package application;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -7,11 +13,28 @@ import java.sql.SQLException;
 import java.util.List;
 import java.util.ArrayList;
 import databasePart1.DatabaseHelper; // Ensure DatabaseHelper is imported
+import databasePart1.Log;
+import databasePart1.NamedQuery;
+import databasePart1.OperationMetrics;
+import databasePart1.OperationStats;
 
 
 public class UserRolePrivileges {
+    // Every role a user can hold, in the order the admin screens list them
+    public static final List<String> ROLES = List.of("admin", "student", "reviewer", "instructor", "staff");
+
+    // The temporary password given by a password reset
+    public static final String TEMPORARY_PASSWORD = "Password2!";  // Ideally, generate a secure random password
+
     private final DatabaseHelper databaseHelper;
 
+    private static final Log LOG = Log.get(UserRolePrivileges.class);
+
+    // Latency, call and error counts of the queries run here, exported through JMX; everything else
+    // delegates to DatabaseHelper, which times it
+    private static final OperationMetrics METRICS = OperationMetrics.forComponent("UserRolePrivileges");
+    private static final OperationStats GET_ALL_USERS_AS_OBJECTS_STATS = METRICS.operation("getAllUsersAsObjects");
+
     public UserRolePrivileges(DatabaseHelper databaseHelper) {
         this.databaseHelper = databaseHelper;
     }
@@ -21,16 +44,67 @@ public class UserRolePrivileges {
         try {
             return databaseHelper.generateInvitationCode(role);
         } catch (Exception e) {
-            System.err.println("Error generating invitation code: " + e.getMessage());
+            LOG.error("Error generating invitation code", "roles", role, e);
             return "Error: Could not generate code.";
         }
     }
 
-    // Admin feature: Reset a user's password
-    public void resetPassword(String userName) throws SQLException {
-        String tempPassword = "Password2!";  // Ideally, generate a secure random password
-        databaseHelper.updateUserPassword(userName, tempPassword);
-        System.out.println("Temporary password set for user: " + userName);
+    /**
+     * Admin feature: Issue a batch of invitation codes at once. The codes are written to a
+     * temporary file next to the target and moved into place only after they are committed,
+     * so the target never lists codes that are not in the database.
+     *
+     * @param role  The comma-separated roles granted by every code.
+     * @param count The number of codes to generate.
+     * @param file  The file that receives one code per line.
+     * @return The number of codes generated.
+     */
+    public int generateInvitationCampaign(String role, int count, Path file) throws SQLException, IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, "invitations", ".tmp");
+        try {
+            int generated;
+            try (Writer out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                generated = databaseHelper.generateInvitationCodes(role, count, out);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return generated;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Admin feature: Reset a user's password; returns false if the user does not exist
+    public boolean resetPassword(String userName) throws SQLException {
+        boolean updated = databaseHelper.updateUserPassword(userName, TEMPORARY_PASSWORD);
+        if (updated) {
+            LOG.debug("Temporary password set", "userName", userName);
+        }
+        return updated;
+    }
+
+    // Admin feature: Reset the passwords of many users in one transaction
+    public int resetPasswords(List<String> userNames) throws SQLException {
+        int updated = databaseHelper.updateUserPasswords(userNames, TEMPORARY_PASSWORD);
+        LOG.debug("Temporary passwords set", "users", updated);
+        return updated;
+    }
+
+    // Admin feature: Delete many users in one transaction; admins are skipped. Returns the deleted userNames.
+    public List<String> deleteUsers(List<String> userNames) throws SQLException {
+        List<String> deleted = databaseHelper.deleteUsers(userNames);
+        LOG.info("Users deleted", "deleted", deleted.size(), "requested", userNames.size());
+        return deleted;
+    }
+
+    // Admin feature: Add a role to many users in one transaction
+    public int addRoleToUsers(List<String> userNames, String role) throws SQLException {
+        return databaseHelper.addRoleToUsers(userNames, role);
+    }
+
+    // Admin feature: Remove a role from many users in one transaction; the last admin keeps the admin role
+    public int removeRoleFromUsers(List<String> userNames, String role) throws SQLException {
+        return databaseHelper.removeRoleFromUsers(userNames, role);
     }
 
     // Admin feature: Delete a user
@@ -38,12 +112,12 @@ public class UserRolePrivileges {
         try {
             if (!databaseHelper.isAdmin(userName)) {
                 databaseHelper.deleteUser(userName);
-                System.out.println("User " + userName + " deleted.");
+                LOG.debug("User deleted", "userName", userName);
             } else {
-                System.out.println("Cannot delete an admin user.");
+                LOG.warn("Cannot delete an admin user", "userName", userName);
             }
         } catch (SQLException e) {
-            System.err.println("Error deleting user: " + e.getMessage());
+            LOG.error("Error deleting user", "userName", userName, e);
         }
     }
 
@@ -56,7 +130,7 @@ public class UserRolePrivileges {
                 System.out.println(user);
             }
         } catch (SQLException e) {
-            System.err.println("Error listing users: " + e.getMessage());
+            LOG.error("Error listing users", e);
         }
     }
     
@@ -69,9 +143,9 @@ public class UserRolePrivileges {
     public void addRole(String userName, String role) {
         try {
             databaseHelper.addUserRole(userName, role);
-            System.out.println("Role " + role + " added to user: " + userName);
+            LOG.debug("Role added", "userName", userName, "role", role);
         } catch (SQLException e) {
-            System.err.println("Error adding role: " + e.getMessage());
+            LOG.error("Error adding role", "userName", userName, e);
         }
     }
 
@@ -80,35 +154,36 @@ public class UserRolePrivileges {
         try {
             if (!role.equals("admin") || databaseHelper.countAdmins() > 1) {
                 databaseHelper.removeUserRole(userName, role);
-                System.out.println("Role " + role + " removed from user: " + userName);
+                LOG.debug("Role removed", "userName", userName, "role", role);
             } else {
-                System.out.println("Cannot remove the last admin role.");
+                LOG.warn("Cannot remove the last admin role", "userName", userName);
             }
         } catch (SQLException e) {
-            System.err.println("Error removing role: " + e.getMessage());
+            LOG.error("Error removing role", "userName", userName, e);
         }
     }
 
     // Admin feature: Get all User info from dB
     public List<User> getAllUsersAsObjects() throws SQLException {
-        List<User> users = new ArrayList<>();
-        String query = "SELECT userName, password, role, name, email FROM cse360users";
-
-        try (Connection conn = databaseHelper.getConnection(); // ✅ Get valid connection
-             PreparedStatement pstmt = conn.prepareStatement(query);
-             ResultSet rs = pstmt.executeQuery()) {
-            
-            while (rs.next()) {
-                users.add(new User(rs.getString("userName"), rs.getString("password"), rs.getString("role"),
-                                   rs.getString("name"), rs.getString("email")));
+        return GET_ALL_USERS_AS_OBJECTS_STATS.time(() -> {
+            List<User> users = new ArrayList<>();
+
+            try (Connection conn = databaseHelper.getConnection()) { // ✅ Get valid connection
+                PreparedStatement pstmt = databaseHelper.prepare(conn, NamedQuery.ALL_USER_DETAILS);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        users.add(new User(rs.getString("userName"), rs.getString("password"), rs.getString("role"),
+                                           rs.getString("name"), rs.getString("email")));
+                    }
+                }
             }
-        }
 
-        if (users.isEmpty()) {
-            System.out.println("No users found in the database.");
-        }
+            if (users.isEmpty()) {
+                LOG.debug("No users found in the database");
+            }
 
-        return users;
+            return users;
+        });
     }
 
     // Admin feature: Update user roles in dB
@@ -0,0 +1,266 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import databasePart1.ChangeEvent;
+import databasePart1.ChangeEventBus;
+import databasePart1.DatabaseHelper;
+import databasePart1.Log;
+import databasePart1.UserPage;
+import databasePart1.UserQuery;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+
+/**
+ * The UserTablePager class fills a users TableView one keyset page at a time.
+ * The first page is loaded up front and the next page is fetched when one of the last
+ * rows scrolls into view, so the admin table never holds more rows than the user has
+ * scrolled past. Pages are fetched off the JavaFX application thread. Filtering and
+ * sorting happen in the database through a {@link UserQuery}.
+ *
+ * The pager also subscribes to the database's change events and applies them as deltas:
+ * deleted users are removed, changed rows are re-read and updated in place or dropped once
+ * they no longer match the query, and new users, or users a change made match, are added
+ * where they sort once that part of the result is loaded. Rows carry their ids, so the
+ * pager orders them exactly as the database does. Every open table stays current without
+ * reloads.
+ */
+public final class UserTablePager {
+	// Start fetching the next page when a row this close to the end becomes visible
+	private static final int PREFETCH_ROWS = 20;
+
+	private static final Log LOG = Log.get(UserTablePager.class);
+
+	private final AsyncDatabaseHelper asyncDatabase;
+	private final TableView<User> table;
+	private final int pageSize;
+
+	private UserQuery query = UserQuery.all();
+	private UserPage lastPage;
+	private boolean hasMore = true;
+	private CompletableFuture<UserPage> pendingPage;
+	private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(false);
+
+	// The rows in the table by userName, so change events find their row without a scan
+	private final Map<String, User> rowsByUserName = new HashMap<>();
+	private final ChangeEventBus.Subscription subscription;
+
+	public UserTablePager(DatabaseHelper databaseHelper, TableView<User> table, int pageSize) {
+		this.asyncDatabase = new AsyncDatabaseHelper(databaseHelper);
+		this.table = table;
+		this.pageSize = pageSize;
+		this.subscription = databaseHelper.getChangeEvents().subscribe(
+				events -> Platform.runLater(() -> applyChanges(events)));
+
+		// Rows are virtualized, so a row only gets an index near the end once it is about to be shown
+		table.setRowFactory(tv -> new TableRow<User>() {
+			@Override
+			public void updateIndex(int index) {
+				super.updateIndex(index);
+				if (index >= 0 && index >= table.getItems().size() - PREFETCH_ROWS) {
+					// Never change the items while the table is in the middle of laying out its rows
+					Platform.runLater(UserTablePager.this::loadNextPage);
+				}
+			}
+		});
+	}
+
+	// Clears the table and loads the first page again, e.g. after users were changed
+	public void reload() {
+		reload(query);
+	}
+
+	// Clears the table and loads the first page of the query's results
+	public void reload(UserQuery query) {
+		cancel();
+		this.query = query;
+		this.lastPage = null;
+		this.hasMore = true;
+		table.getItems().clear();
+		rowsByUserName.clear();
+		loadNextPage();
+	}
+
+	public UserQuery getQuery() {
+		return query;
+	}
+
+	// Appends the next page to the table unless a page is already loading or none are left
+	public void loadNextPage() {
+		if (pendingPage != null || !hasMore) {
+			return;
+		}
+		loading.set(true);
+		CompletableFuture<UserPage> call = asyncDatabase.searchUsers(query, lastPage, pageSize);
+		pendingPage = call;
+		AsyncDatabaseHelper.onFxThread(call, page -> {
+			if (pendingPage != call) {
+				return; // Finished just as the table was reloaded; this page is stale
+			}
+			pendingPage = null;
+			loading.set(false);
+			lastPage = page;
+			hasMore = page.hasMore();
+			append(page.getUsers());
+		}, e -> {
+			if (pendingPage != call) {
+				return;
+			}
+			pendingPage = null;
+			loading.set(false);
+			hasMore = false;
+			LOG.error("Error loading users", "query", query, e);
+		});
+	}
+
+	// Stops the page that is currently loading, e.g. when the table's window is closed
+	public void cancel() {
+		if (pendingPage != null) {
+			pendingPage.cancel(true);
+			pendingPage = null;
+			loading.set(false);
+		}
+	}
+
+	// Stops loading and stops listening for changes; call when the table's window is closed
+	public void close() {
+		cancel();
+		subscription.close();
+	}
+
+	// Appends users that are not already shown, e.g. one added by a change event and then paged in
+	private void append(List<User> users) {
+		List<User> added = new ArrayList<>(users.size());
+		for (User user : users) {
+			if (rowsByUserName.putIfAbsent(user.getUserName(), user) == null) {
+				added.add(user);
+			}
+		}
+		table.getItems().addAll(added);
+	}
+
+	// Applies one transaction's changes to the table; runs on the JavaFX application thread
+	private void applyChanges(List<ChangeEvent> events) {
+		Set<String> deleted = new LinkedHashSet<>();
+		Set<String> refresh = new LinkedHashSet<>();
+		boolean byUserName = query.getSearchField() == UserQuery.Field.USERNAME;
+		boolean filtered = !query.getSearchPrefix().isEmpty() || query.getRole() != null;
+		boolean byId = query.getSortField() == null;
+		for (ChangeEvent event : events) {
+			if (!event.isUser()) {
+				continue;
+			}
+			String userName = event.getKey();
+			switch (event.getType()) {
+				case DELETE:
+					deleted.add(userName);
+					break;
+				case UPDATE:
+					if (rowsByUserName.containsKey(userName)) {
+						refresh.add(userName);
+						break;
+					}
+					// Without filters an unloaded user matched all along, and in id order it keeps
+					// its place in the part of the result that is not loaded yet
+					if (byId && !filtered) {
+						break;
+					}
+					// The change may have made the user match, or moved their sort key into the loaded rows
+					if (!byUserName || userName.toLowerCase(Locale.ROOT).startsWith(query.getSearchPrefix())) {
+						refresh.add(userName);
+					}
+					break;
+				case INSERT:
+					// Skip names the userName filter rules out without asking the database
+					if (!byUserName || userName.toLowerCase(Locale.ROOT).startsWith(query.getSearchPrefix())) {
+						refresh.add(userName);
+					}
+					break;
+			}
+		}
+
+		removeRows(deleted);
+		if (refresh.isEmpty()) {
+			return;
+		}
+
+		// One query for every changed row of the transaction
+		UserQuery applied = query;
+		AsyncDatabaseHelper.onFxThread(asyncDatabase.getUsers(refresh), users -> {
+			if (applied != query) {
+				return; // The table was reloaded with another query in the meantime
+			}
+			Comparator<User> order = query.comparator();
+			for (User fresh : users) {
+				refresh.remove(fresh.getUserName());
+				User row = rowsByUserName.get(fresh.getUserName());
+				if (!query.matches(fresh)) {
+					refresh.add(fresh.getUserName()); // No longer passes the filter
+				} else if (row == null) {
+					insertRow(fresh, order);
+				} else if (order.compare(row, fresh) != 0) {
+					// The sort key changed, so the row moves
+					rowsByUserName.remove(row.getUserName());
+					table.getItems().remove(row);
+					insertRow(fresh, order);
+				} else {
+					row.setRole(fresh.getRole());
+					row.setPassword(fresh.getPassword());
+					row.setName(fresh.getName());
+					row.setEmail(fresh.getEmail());
+				}
+			}
+			removeRows(refresh); // Deleted since the event, or filtered out
+		}, e -> LOG.error("Error refreshing users", e));
+	}
+
+	// Adds a row where it sorts, if that part of the result is loaded; otherwise paging brings it in
+	private void insertRow(User user, Comparator<User> order) {
+		ObservableList<User> items = table.getItems();
+		int position = Collections.binarySearch(items, user, order);
+		if (position < 0) {
+			position = -position - 1;
+		}
+		if (position == items.size() && hasMore) {
+			return; // Sorts after the loaded rows
+		}
+		rowsByUserName.put(user.getUserName(), user);
+		items.add(position, user);
+	}
+
+	// Removes the rows of the given users with a single change to the table's items
+	private void removeRows(Set<String> userNames) {
+		List<User> rows = new ArrayList<>();
+		for (String userName : userNames) {
+			User row = rowsByUserName.remove(userName);
+			if (row != null) {
+				rows.add(row);
+			}
+		}
+		if (!rows.isEmpty()) {
+			table.getItems().removeAll(rows);
+		}
+	}
+
+	// True while a page is being fetched
+	public ReadOnlyBooleanProperty loadingProperty() {
+		return loading.getReadOnlyProperty();
+	}
+
+	public boolean hasMore() {
+		return hasMore;
+	}
+}
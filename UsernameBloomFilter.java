@@ -0,0 +1,148 @@
+package databasePart1;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The UsernameBloomFilter class is a Bloom filter over every userName in cse360users.
+ * A negative answer is definite, so most availability checks for free userNames never
+ * reach the database; a positive answer only means the name might exist and must be
+ * confirmed with a query.
+ *
+ * Bits can only be set, never cleared, so deleted users stay in the filter until it is
+ * rebuilt. DatabaseHelper tracks that drift with {@link #recordDelete()} and rebuilds the
+ * filter once it grows too large.
+ */
+public class UsernameBloomFilter {
+
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+	private final long capacity;
+
+	private final LongAdder insertions = new LongAdder();
+	private final LongAdder deletes = new LongAdder();
+
+	// Probe metrics
+	private final LongAdder definiteNegatives = new LongAdder();
+	private final LongAdder positives = new LongAdder();
+	private final LongAdder falsePositives = new LongAdder();
+
+	/**
+	 * @param capacity          The number of userNames the filter is sized for.
+	 * @param falsePositiveRate The target false positive rate at that capacity, e.g. 0.01.
+	 */
+	public UsernameBloomFilter(long capacity, double falsePositiveRate) {
+		this.capacity = Math.max(1, capacity);
+		long m = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+		this.bitCount = Math.max(64, (m + 63) / 64 * 64);
+		this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+		this.bits = new AtomicLongArray((int) (bitCount / 64));
+	}
+
+	public void put(String userName) {
+		long hash = hash(userName);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			setBit(index(h1 + i * h2));
+		}
+		insertions.increment();
+	}
+
+	// Returns false only if the userName is definitely not in the table
+	public boolean mightContain(String userName) {
+		long hash = hash(userName);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			if (!getBit(index(h1 + i * h2))) {
+				definiteNegatives.increment();
+				return false;
+			}
+		}
+		positives.increment();
+		return true;
+	}
+
+	// Called when the database showed that a positive answer was wrong
+	public void recordFalsePositive() {
+		falsePositives.increment();
+	}
+
+	// Called when a user is deleted; the name's bits stay set until the filter is rebuilt
+	public void recordDelete() {
+		deletes.increment();
+	}
+
+	// True once deleted names or growth past the sized capacity make the filter worth rebuilding
+	public boolean needsRebuild(double maxDeleteDrift) {
+		long inserted = insertions.sum();
+		return inserted > capacity || deletes.sum() > Math.max(1, inserted) * maxDeleteDrift;
+	}
+
+	private long index(int combinedHash) {
+		return (combinedHash & Integer.MAX_VALUE) % bitCount;
+	}
+
+	private void setBit(long index) {
+		int word = (int) (index >>> 6);
+		long mask = 1L << (index & 63);
+		long current;
+		do {
+			current = bits.get(word);
+			if ((current & mask) != 0) {
+				return;
+			}
+		} while (!bits.compareAndSet(word, current, current | mask));
+	}
+
+	private boolean getBit(long index) {
+		return (bits.get((int) (index >>> 6)) & (1L << (index & 63))) != 0;
+	}
+
+	// 64-bit FNV-1a over the characters, finished with a murmur3 mix so both halves are well spread
+	private static long hash(String value) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// Metrics
+	public long getCapacity() { return capacity; }
+	public long getBitCount() { return bitCount; }
+	public int getHashCount() { return hashCount; }
+	public long getInsertions() { return insertions.sum(); }
+	public long getDeletes() { return deletes.sum(); }
+	public long getDefiniteNegatives() { return definiteNegatives.sum(); }
+	public long getPositives() { return positives.sum(); }
+	public long getFalsePositives() { return falsePositives.sum(); }
+
+	// Share of probes for absent names that the filter could not rule out
+	public double getObservedFalsePositiveRate() {
+		long falsePositive = falsePositives.sum();
+		long absent = definiteNegatives.sum() + falsePositive;
+		return absent == 0 ? 0.0 : (double) falsePositive / absent;
+	}
+
+	// Theoretical false positive rate for the current number of insertions
+	public double getExpectedFalsePositiveRate() {
+		return Math.pow(1 - Math.exp(-(double) hashCount * insertions.sum() / bitCount), hashCount);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("UsernameBloomFilter[bits=%d, hashes=%d, insertions=%d/%d, deletes=%d, "
+				+ "negatives=%d, positives=%d, falsePositives=%d, observedFpp=%.4f, expectedFpp=%.4f]",
+				bitCount, hashCount, getInsertions(), capacity, getDeletes(), getDefiniteNegatives(),
+				getPositives(), getFalsePositives(), getObservedFalsePositiveRate(), getExpectedFalsePositiveRate());
+	}
+}
@@ -12,6 +12,7 @@ import databasePart1.*;
  * It allows users to navigate to their respective pages based on their role or quit the application.
  */
 public class WelcomeLoginPage {
+	private static final Log LOG = Log.get(WelcomeLoginPage.class);
 	
 	private final DatabaseHelper databaseHelper;
 	
@@ -30,7 +31,7 @@ public class WelcomeLoginPage {
 	    Button continueButton = new Button("Continue to your Page");
 	    continueButton.setOnAction(a -> {
 	    	String role =user.getRole();
-	    	System.out.println(role);
+	    	LOG.debug("Continuing to role page", "role", role);
 	    	
 	    	if(role.equals("admin")) {
 	    		new AdminHomePage(databaseHelper).show(primaryStage);
@@ -0,0 +1,206 @@
+package application;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import databasePart1.DatabaseHelper;
+
+/**
+ * The AuthBenchmark class measures the authentication and user-management paths against an
+ * embedded in-memory H2 database seeded with a configurable number of users. For every
+ * operation and dataset size it runs a warm-up phase, then a timed measurement phase, and
+ * reports throughput and latency percentiles. Operations that add users run last, so every
+ * read is measured against exactly the seeded number of users.
+ *
+ * The benchmark lives in its own bench source root and is not part of the application; compile
+ * it against the application classes.
+ *
+ * Usage: java application.AuthBenchmark [--users 1000,10000] [--warmup 2] [--seconds 5] [--threads 1]
+ */
+public class AuthBenchmark {
+
+	private static final String PASSWORD = "Passw0rd!";
+	private static final int SEED_BATCH_SIZE = 1000;
+
+	// Latency samples kept per operation; later samples overwrite the oldest
+	private static final int MAX_SAMPLES = 1 << 20;
+
+	private final int userCount;
+	private final int warmupSeconds;
+	private final int measureSeconds;
+	private final int threads;
+	private final AtomicLong registerSequence = new AtomicLong();
+
+	private DatabaseHelper databaseHelper;
+	private UserRolePrivileges userRolePrivileges;
+
+	// One benchmarked operation; the argument is a per-thread iteration counter used to pick inputs
+	@FunctionalInterface
+	private interface Operation {
+		Object run(long iteration) throws Exception;
+	}
+
+	public AuthBenchmark(int userCount, int warmupSeconds, int measureSeconds, int threads) {
+		this.userCount = userCount;
+		this.warmupSeconds = warmupSeconds;
+		this.measureSeconds = measureSeconds;
+		this.threads = threads;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] userCounts = { 1000, 10000 };
+		int warmup = 2;
+		int seconds = 5;
+		int threads = 1;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--users":
+					userCounts = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+					break;
+				case "--warmup":
+					warmup = Integer.parseInt(args[i + 1]);
+					break;
+				case "--seconds":
+					seconds = Integer.parseInt(args[i + 1]);
+					break;
+				case "--threads":
+					threads = Integer.parseInt(args[i + 1]);
+					break;
+				default:
+					System.err.println("Unknown option: " + args[i]);
+					return;
+			}
+		}
+
+		System.out.printf("%-22s %8s %12s %10s %10s %10s %10s%n",
+				"operation", "users", "ops/s", "mean us", "p50 us", "p99 us", "max us");
+		for (int userCount : userCounts) {
+			new AuthBenchmark(userCount, warmup, seconds, threads).run();
+		}
+	}
+
+	public void run() throws Exception {
+		setUp();
+		try {
+			benchmark("authenticate", i -> databaseHelper.authenticate(userName(i), PASSWORD));
+			benchmark("doesUserExist", i -> databaseHelper.doesUserExist(userName(i)));
+			benchmark("doesUserExist (miss)", i -> databaseHelper.doesUserExist("missing" + i));
+			benchmark("getUserRoles", i -> databaseHelper.getUserRoles(userName(i)));
+			benchmark("getAllUsersAsObjects", i -> userRolePrivileges.getAllUsersAsObjects());
+			benchmark("evaluatePassword", i -> PasswordEvaluator.evaluatePassword(PASSWORD));
+			// Mutating operations last; each grows the table the reads above were measured on
+			benchmark("register", i -> {
+				databaseHelper.register(new User("bench" + registerSequence.incrementAndGet(), PASSWORD, "student",
+						"Bench User", "bench@example.com"));
+				return null;
+			});
+		} finally {
+			databaseHelper.closeConnection();
+		}
+	}
+
+	// Opens a fresh in-memory database and inserts the seed users with batched statements
+	private void setUp() throws SQLException {
+		databaseHelper = new DatabaseHelper("jdbc:h2:mem:bench" + userCount + ";DB_CLOSE_DELAY=-1");
+		databaseHelper.connectToDatabase();
+		userRolePrivileges = new UserRolePrivileges(databaseHelper);
+
+		try (Connection conn = databaseHelper.getConnection()) {
+			conn.setAutoCommit(false);
+			try (PreparedStatement insert = conn.prepareStatement(
+					"INSERT INTO cse360users (userName, password, name, email) VALUES (?, ?, ?, ?)")) {
+				for (int i = 0; i < userCount; i++) {
+					insert.setString(1, userName(i));
+					insert.setString(2, PASSWORD);
+					insert.setString(3, "Seed User " + i);
+					insert.setString(4, "seed" + i + "@example.com");
+					insert.addBatch();
+					if ((i + 1) % SEED_BATCH_SIZE == 0) {
+						insert.executeBatch();
+					}
+				}
+				insert.executeBatch();
+			}
+			try (Statement statement = conn.createStatement()) {
+				statement.executeUpdate("INSERT INTO user_roles (user_id, role) SELECT id, 'student' FROM cse360users");
+			}
+			conn.commit();
+		}
+		databaseHelper.rebuildUsernameFilter(); // The seed rows bypassed register()
+	}
+
+	private String userName(long i) {
+		return "seed" + (i % userCount);
+	}
+
+	private void benchmark(String name, Operation operation) throws Exception {
+		runPhase(operation, TimeUnit.SECONDS.toNanos(warmupSeconds), null);
+
+		long[][] samples = new long[threads][];
+		long start = System.nanoTime();
+		long totalOps = runPhase(operation, TimeUnit.SECONDS.toNanos(measureSeconds), samples);
+		long elapsed = System.nanoTime() - start;
+
+		long[] latencies = merge(samples);
+		Arrays.sort(latencies);
+		double mean = Arrays.stream(latencies).average().orElse(0);
+		System.out.printf("%-22s %8d %12.1f %10.2f %10.2f %10.2f %10.2f%n", name, userCount,
+				totalOps * 1e9 / elapsed, mean / 1000, percentile(latencies, 0.50) / 1000.0,
+				percentile(latencies, 0.99) / 1000.0, latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000.0);
+	}
+
+	// Runs the operation on every thread until the deadline and returns the number of completed calls
+	private long runPhase(Operation operation, long durationNanos, long[][] samples) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			long deadline = System.nanoTime() + durationNanos;
+			List<Future<Long>> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int thread = t;
+				workers.add(executor.submit(() -> {
+					long[] latencies = new long[MAX_SAMPLES];
+					long iteration = thread * 7919L; // Spread threads across the seed users
+					long count = 0;
+					long now;
+					while ((now = System.nanoTime()) < deadline) {
+						operation.run(iteration++);
+						latencies[(int) (count++ & (MAX_SAMPLES - 1))] = System.nanoTime() - now;
+					}
+					if (samples != null) {
+						samples[thread] = Arrays.copyOf(latencies, (int) Math.min(count, MAX_SAMPLES));
+					}
+					return count;
+				}));
+			}
+			long total = 0;
+			for (Future<Long> worker : workers) {
+				total += worker.get();
+			}
+			return total;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static long[] merge(long[][] samples) {
+		return Arrays.stream(samples).flatMapToLong(Arrays::stream).toArray();
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+	}
+}